@@ -0,0 +1,55 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Hilos de plataforma frente a hilos virtuales (ver ServerExecutors) con
+ * tareas que bloquean como un handler que espera disco o red: cada
+ * operación lanza un lote de tareas de 1 ms y espera a que terminen.
+ * Sin hilos virtuales en la JVM el modo VIRTUAL cae al pool de plataforma.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djuego.log.level=WARN"})
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ServerExecutors.Mode mode;
+
+    @Param({"1000"})
+    public int tasks;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        executor = ServerExecutors.create(mode, Integer.getInteger("juego.threads", 10), "bench");
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void blockingBatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
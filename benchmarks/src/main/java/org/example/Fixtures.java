@@ -0,0 +1,60 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Datos de prueba compartidos por los benchmarks. */
+final class Fixtures {
+
+    private Fixtures() {}
+
+    static List<Round> rounds(int count) {
+        List<Round> rounds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = "PALABRA" + i;
+            rounds.add(new Round(word, new String[]{
+                    "data/imagenes/" + i + "a.jpg", "data/imagenes/" + i + "b.jpg",
+                    "data/imagenes/" + i + "c.jpg", "data/imagenes/" + i + "d.jpg"}, 30));
+        }
+        return rounds;
+    }
+
+    static void writeRoundsXML(File file, int count) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write("<rounds>\n");
+            for (Round r : rounds(count)) {
+                out.write("    <round>\n        <word>" + r.word + "</word>\n");
+                for (String img : r.images) out.write("        <img>" + img + "</img>\n");
+                out.write("        <time>" + r.timeLimit + "</time>\n    </round>\n");
+            }
+            out.write("</rounds>\n");
+        }
+    }
+
+    static File tempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdirs()) throw new IOException("No se pudo crear " + dir);
+        return dir;
+    }
+
+    static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteRecursively(c);
+        f.delete();
+    }
+
+    /** Almacenamiento que descarta los puntajes, para medir sólo la sala. */
+    static final class NullStorage implements GameStorage {
+        private final Leaderboard leaderboard = new Leaderboard();
+
+        @Override public List<Round> loadRounds() { return rounds(10); }
+        @Override public void saveScore(String player, int points, String room) {}
+        @Override public Leaderboard getLeaderboard() { return leaderboard; }
+        @Override public void exportScoresXML(Writer out) {}
+        @Override public int getScoreBacklog() { return 0; }
+        @Override public File getDataDir() { return new File(System.getProperty("java.io.tmpdir")); }
+        @Override public void close() {}
+    }
+}
@@ -0,0 +1,47 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificación de los parámetros de una petición (cuerpo
+ * application/x-www-form-urlencoded o consulta GET) con FormDecoder.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djuego.log.level=WARN"})
+@State(Scope.Benchmark)
+public class FormDecoderBenchmark {
+
+    @Param({"submit", "escaped", "large"})
+    public String body;
+
+    private String input;
+
+    @Setup
+    public void setup() {
+        switch (body) {
+            case "submit":
+                input = "roomId=ROOM_1A2B3C&playerName=jugador7&answer=PERRO";
+                break;
+            case "escaped":
+                input = "roomId=ROOM_1A2B3C&playerName=Mar%C3%ADa+Jos%C3%A9&answer=m%C3%BAsica%21";
+                break;
+            default:
+                // Campos conocidos al final de muchos desconocidos
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < 64; i++) {
+                    sb.append("campo").append(i).append('=').append("valor+con+espacios+").append(i).append('&');
+                }
+                input = sb.append("roomId=ROOM_1A2B3C&playerName=jugador7&sinceVersion=1792298334338003").toString();
+        }
+    }
+
+    @Benchmark
+    public FormDecoder.Fields decode() throws FormDecoder.TooLargeException {
+        return FormDecoder.decode(input);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Camino caliente de una sala: responder y pedir el estado.
+ *
+ * Las respuestas siempre aciertan, así que cada ronda termina cuando
+ * respondieron todos; el que ve la ronda terminada la avanza y al acabar
+ * el catálogo la partida vuelve a empezar. Así cada medición incluye los
+ * cambios de estado reales (puntaje, cierre de ronda, siguiente ronda) y
+ * no sólo el camino de "ya respondiste".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djuego.log.level=WARN"})
+@State(Scope.Benchmark)
+public class GameRoomBenchmark {
+
+    @Param({"2", "8", "32"})
+    public int players;
+
+    @Param({"10", "1000"})
+    public int catalogSize;
+
+    private final GameStorage storage = new Fixtures.NullStorage();
+    private final AtomicInteger nextThread = new AtomicInteger();
+    private List<Round> rounds;
+    private GameRoom room;
+
+    @Setup
+    public void setup() {
+        rounds = Fixtures.rounds(catalogSize);
+        room = new GameRoom("BENCH", players);
+        for (int i = 0; i < players; i++) room.addPlayer(player(i));
+        room.setHost(player(0));
+        room.startGame(rounds);
+    }
+
+    @TearDown
+    public void tearDown() {
+        room.close();
+    }
+
+    private static String player(int i) {
+        return "jugador" + i;
+    }
+
+    /**
+     * Cada hilo recorre todos los jugadores desde un punto de partida
+     * distinto, así las rondas se completan y los hilos chocan en el CAS.
+     */
+    @State(Scope.Thread)
+    public static class Player {
+        int next;
+
+        @Setup
+        public void setup(GameRoomBenchmark bench) {
+            next = bench.nextThread.getAndIncrement();
+        }
+    }
+
+    private SubmitResult answer(String player) {
+        Round r = room.getCurrentRound();
+        SubmitResult result = room.submitAnswer(player, r.word, storage);
+        if (room.isRoundFinished() && !room.nextRound() && room.isGameOver()) room.startGame(rounds);
+        return result;
+    }
+
+    // Un hilo que responde por todos los jugadores, uno tras otro
+    @Benchmark
+    public SubmitResult submitAnswer(Player p) {
+        return answer(player(p.next++ % players));
+    }
+
+    // Cuatro hilos respondiendo en la misma sala
+    @Benchmark
+    @Threads(4)
+    public SubmitResult submitAnswerContended(Player p) {
+        return answer(player(p.next++ % players));
+    }
+
+    // Respuesta equivocada: sólo lee el estado, sin transición
+    @Benchmark
+    @Threads(4)
+    public SubmitResult submitWrongAnswerContended(Player p) {
+        return room.submitAnswer(player(p.next++ % players), "NOPE", storage);
+    }
+
+    // Lo que ve un cliente que sondea: la misma versión ya renderizada
+    @Benchmark
+    public String getStatusXML() {
+        return room.getStatusXML();
+    }
+
+    // Tras un cambio la primera consulta vuelve a renderizar el XML
+    @Benchmark
+    public String getStatusXMLAfterChange() {
+        String last = player(players - 1);
+        room.removePlayer(last);
+        room.addPlayer(last);
+        return room.getStatusXML();
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puntajes en XMLDatabase: encolar un puntaje (con el historial ya
+ * cargado) y abrir la base, que reconstruye la clasificación desde el
+ * historial y lee el catálogo de rondas.
+ *
+ * saveScore usa la contrapresión configurada (BLOCK por defecto), así que
+ * en régimen estable mide lo que el escritor en segundo plano sostiene.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djuego.log.level=WARN"})
+@State(Scope.Benchmark)
+public class ScoreStorageBenchmark {
+
+    @Param({"0", "100000"})
+    public int historySize;
+
+    @Param({"10", "1000"})
+    public int catalogSize;
+
+    private File dataDir;
+    private XMLDatabase db;
+
+    @Setup
+    public void setup() throws Exception {
+        dataDir = Fixtures.tempDir("bench-scores");
+        Fixtures.writeRoundsXML(new File(dataDir, "rounds.xml"), catalogSize);
+
+        XMLDatabase seed = new XMLDatabase(dataDir);
+        for (int i = 0; i < historySize; i++) {
+            seed.saveScore("jugador" + (i % 1000), 100 + i % 900, "ROOM_" + (i % 5000));
+        }
+        seed.close();
+
+        db = new XMLDatabase(dataDir);
+    }
+
+    @TearDown
+    public void tearDown() {
+        db.close();
+        Fixtures.deleteRecursively(dataDir);
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        int n;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void saveScore(Counter c) {
+        int n = c.n++;
+        db.saveScore("jugador" + (n & 1023), 500, "ROOM_" + (n & 4095));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    public void saveScoreContended(Counter c) {
+        int n = c.n++;
+        db.saveScore("jugador" + (n & 1023), 500, "ROOM_" + (n & 4095));
+    }
+
+    // Arranque: recuperar el historial, reconstruir la clasificación y leer rounds.xml
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Round> open() throws IOException {
+        XMLDatabase opened = new XMLDatabase(dataDir);
+        try {
+            return opened.loadRounds();
+        } finally {
+            opened.close();
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package org.example;
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backend embebido sobre H2 (motor MVStore). Los puntajes se insertan por
+ * lotes en una tabla indexada por jugador y por sala, con escrituras
+ * concurrentes y consultas por índice; las rondas se importan de rounds.xml
+ * a la base cuando el archivo cambia.
+ *
+ * Cada lote también suma sus puntos a dos tablas de totales (por jugador y
+ * por sala y jugador) en la misma transacción, así que la clasificación se
+ * reconstruye al arrancar leyendo totales y no todo el historial. Las salas
+ * sin puntajes en -Djuego.scores.roomRetentionHours (24) se borran de sus
+ * totales al arrancar; el historial completo queda en scores.
+ *
+ * Se activa con -Djuego.storage=embedded; los datos quedan en juego.mv.db
+ * dentro del directorio de datos.
+ */
+public class EmbeddedDatabase implements GameStorage {
+
+    private static final Log LOG = Log.get(EmbeddedDatabase.class);
+    // Largo de scores.player; un nombre más largo haría fallar el lote entero
+    static final int NAME_COLUMN = 255;
+
+    private final File dataDir;
+    private final File roundsFile;
+    private final String url;
+
+    // Conexión exclusiva de las escrituras de puntajes
+    private final Connection writeConnection;
+    private final RoundCatalog catalog;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final ScoreWriter scoreWriter;
+
+    public EmbeddedDatabase(File dataDir) {
+        this.dataDir = dataDir;
+        this.roundsFile = new File(dataDir, "rounds.xml");
+        this.url = "jdbc:h2:file:" + new File(dataDir, "juego").getAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE";
+
+        try {
+            writeConnection = DriverManager.getConnection(url, "sa", "");
+            createSchema();
+            fillTotalsOnce();
+            importRoundsIfChanged();
+            catalog = readCatalog();
+            rebuildLeaderboard();
+            writeConnection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo abrir la base embebida " + url, e);
+        }
+        scoreWriter = ScoreWriter.create(new ScoreTable());
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, "sa", "");
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement st = writeConnection.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS meta (k VARCHAR(64) PRIMARY KEY, v VARCHAR(255))");
+            st.execute("CREATE TABLE IF NOT EXISTS rounds ("
+                    + "id INT PRIMARY KEY, word VARCHAR(255) NOT NULL, time_limit INT NOT NULL)");
+            st.execute("CREATE TABLE IF NOT EXISTS round_images ("
+                    + "round_id INT NOT NULL, pos INT NOT NULL, path VARCHAR(1024) NOT NULL, "
+                    + "PRIMARY KEY (round_id, pos))");
+            st.execute("CREATE TABLE IF NOT EXISTS scores ("
+                    + "id BIGINT AUTO_INCREMENT PRIMARY KEY, player VARCHAR(255) NOT NULL, "
+                    + "room VARCHAR(64) NOT NULL, points INT NOT NULL, ts BIGINT NOT NULL)");
+            st.execute("CREATE INDEX IF NOT EXISTS scores_player ON scores (player)");
+            st.execute("CREATE INDEX IF NOT EXISTS scores_room ON scores (room, player)");
+            st.execute("CREATE TABLE IF NOT EXISTS player_totals ("
+                    + "player VARCHAR(255) PRIMARY KEY, points BIGINT NOT NULL)");
+            st.execute("CREATE TABLE IF NOT EXISTS room_totals ("
+                    + "room VARCHAR(64) NOT NULL, player VARCHAR(255) NOT NULL, points BIGINT NOT NULL, "
+                    + "last_ts BIGINT NOT NULL, PRIMARY KEY (room, player))");
+            st.execute("CREATE INDEX IF NOT EXISTS room_totals_ts ON room_totals (last_ts)");
+        }
+    }
+
+    // Una base anterior a las tablas de totales se recorre una única vez para llenarlas
+    private void fillTotalsOnce() throws SQLException {
+        try (PreparedStatement ps = writeConnection.prepareStatement("SELECT v FROM meta WHERE k = 'totals'");
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) return;
+        }
+        long start = System.currentTimeMillis();
+        writeConnection.setAutoCommit(false);
+        try (Statement st = writeConnection.createStatement()) {
+            st.execute("DELETE FROM player_totals");
+            st.execute("DELETE FROM room_totals");
+            st.execute("INSERT INTO player_totals (player, points) "
+                    + "SELECT player, SUM(points) FROM scores GROUP BY player");
+            st.execute("INSERT INTO room_totals (room, player, points, last_ts) "
+                    + "SELECT room, player, SUM(points), MAX(ts) FROM scores GROUP BY room, player");
+            st.execute("MERGE INTO meta (k, v) KEY (k) VALUES ('totals', '1')");
+            writeConnection.commit();
+        } catch (SQLException e) {
+            writeConnection.rollback();
+            throw e;
+        } finally {
+            writeConnection.setAutoCommit(true);
+        }
+        LOG.info("Totales de puntajes calculados desde el historial en {} ms", System.currentTimeMillis() - start);
+    }
+
+    // ---------------------------------------------------------
+    // RONDAS
+    // ---------------------------------------------------------
+
+    private void importRoundsIfChanged() throws SQLException {
+        String modified = roundsFile.isFile() ? Long.toString(roundsFile.lastModified()) : "classpath";
+        String imported = null;
+        try (PreparedStatement ps = writeConnection.prepareStatement("SELECT v FROM meta WHERE k = 'rounds.modified'");
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next()) imported = rs.getString(1);
+        }
+        if (modified.equals(imported)) return;
+
+        List<Round> rounds;
+        try (InputStream is = roundsFile.isFile()
+                ? new FileInputStream(roundsFile)
+                : getClass().getClassLoader().getResourceAsStream("data/rounds.xml")) {
+            if (is == null) {
+                if (imported != null) return; // se conserva lo ya importado
+                throw new IllegalStateException("No se encontró el archivo rounds.xml");
+            }
+            rounds = XMLDatabase.parseRounds(is);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer rounds.xml: " + e.getMessage(), e);
+        }
+
+        writeConnection.setAutoCommit(false);
+        try (Statement st = writeConnection.createStatement();
+             PreparedStatement round = writeConnection.prepareStatement(
+                     "INSERT INTO rounds (id, word, time_limit) VALUES (?, ?, ?)");
+             PreparedStatement image = writeConnection.prepareStatement(
+                     "INSERT INTO round_images (round_id, pos, path) VALUES (?, ?, ?)");
+             PreparedStatement meta = writeConnection.prepareStatement(
+                     "MERGE INTO meta (k, v) KEY (k) VALUES ('rounds.modified', ?)")) {
+            st.execute("DELETE FROM round_images");
+            st.execute("DELETE FROM rounds");
+            for (int i = 0; i < rounds.size(); i++) {
+                Round r = rounds.get(i);
+                round.setInt(1, i);
+                round.setString(2, r.word);
+                round.setInt(3, r.timeLimit);
+                round.addBatch();
+                for (int j = 0; j < r.images.length; j++) {
+                    image.setInt(1, i);
+                    image.setInt(2, j);
+                    image.setString(3, r.images[j]);
+                    image.addBatch();
+                }
+            }
+            round.executeBatch();
+            image.executeBatch();
+            meta.setString(1, modified);
+            meta.executeUpdate();
+            writeConnection.commit();
+        } catch (SQLException e) {
+            writeConnection.rollback();
+            throw e;
+        } finally {
+            writeConnection.setAutoCommit(true);
+        }
+        LOG.info("Importadas {} rondas a la base embebida", rounds.size());
+    }
+
+    private RoundCatalog readCatalog() throws SQLException {
+        List<Round> rounds = new ArrayList<>();
+        try (Statement st = writeConnection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT r.id, r.word, r.time_limit, i.path "
+                     + "FROM rounds r JOIN round_images i ON i.round_id = r.id ORDER BY r.id, i.pos")) {
+            int currentId = -1;
+            String word = null;
+            int time = 0;
+            List<String> images = new ArrayList<>();
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                if (id != currentId && currentId != -1) {
+                    rounds.add(new Round(word, images.toArray(new String[0]), time));
+                    images.clear();
+                }
+                currentId = id;
+                word = rs.getString(2);
+                time = rs.getInt(3);
+                images.add(rs.getString(4));
+            }
+            if (currentId != -1) rounds.add(new Round(word, images.toArray(new String[0]), time));
+        }
+        if (rounds.isEmpty()) throw new IllegalStateException("La base embebida no tiene rondas");
+        return new RoundCatalog(rounds, 0L);
+    }
+
+    @Override
+    public List<Round> loadRounds() {
+        return catalog.rounds;
+    }
+
+    // ---------------------------------------------------------
+    // PUNTAJES
+    // ---------------------------------------------------------
+
+    private void rebuildLeaderboard() throws SQLException {
+        long start = System.currentTimeMillis();
+        long cutoff = start - TimeUnit.HOURS.toMillis(Long.getLong("juego.scores.roomRetentionHours", 24L));
+        try (PreparedStatement prune = writeConnection.prepareStatement("DELETE FROM room_totals WHERE last_ts < ?")) {
+            prune.setLong(1, cutoff);
+            prune.executeUpdate();
+        }
+        try (Statement st = writeConnection.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT player, points FROM player_totals")) {
+                while (rs.next()) leaderboard.addGlobal(rs.getString(1), rs.getLong(2));
+            }
+            try (ResultSet rs = st.executeQuery("SELECT room, player, points FROM room_totals")) {
+                while (rs.next()) leaderboard.addInRoom(rs.getString(1), rs.getString(2), rs.getLong(3));
+            }
+        }
+        LOG.info("Clasificación reconstruida: {} jugadores en {} ms",
+                leaderboard.playerCount(), System.currentTimeMillis() - start);
+    }
+
+    // Inserta cada lote del ScoreWriter y suma sus totales en una única transacción
+    private final class ScoreTable implements ScoreSink {
+        @Override
+        public synchronized void append(List<ScoreEntry> batch) throws IOException {
+            // Totales del lote: una fila por jugador y por sala-jugador aunque haya varios puntajes
+            Map<String, Long> players = new HashMap<>();
+            Map<String, Map<String, long[]>> rooms = new HashMap<>();
+            for (ScoreEntry e : batch) {
+                players.merge(e.player, (long) e.points, Long::sum);
+                long[] t = rooms.computeIfAbsent(e.room, k -> new HashMap<>()).computeIfAbsent(e.player, k -> new long[2]);
+                t[0] += e.points;
+                t[1] = Math.max(t[1], e.timestamp);
+            }
+            try (PreparedStatement ps = writeConnection.prepareStatement(
+                    "INSERT INTO scores (player, room, points, ts) VALUES (?, ?, ?, ?)");
+                 PreparedStatement player = writeConnection.prepareStatement(
+                         "MERGE INTO player_totals t USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS BIGINT))) s (player, points) "
+                                 + "ON t.player = s.player "
+                                 + "WHEN MATCHED THEN UPDATE SET t.points = t.points + s.points "
+                                 + "WHEN NOT MATCHED THEN INSERT (player, points) VALUES (s.player, s.points)");
+                 PreparedStatement room = writeConnection.prepareStatement(
+                         "MERGE INTO room_totals t USING (VALUES (CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(255)), "
+                                 + "CAST(? AS BIGINT), CAST(? AS BIGINT))) s (room, player, points, last_ts) "
+                                 + "ON t.room = s.room AND t.player = s.player "
+                                 + "WHEN MATCHED THEN UPDATE SET t.points = t.points + s.points, t.last_ts = GREATEST(t.last_ts, s.last_ts) "
+                                 + "WHEN NOT MATCHED THEN INSERT (room, player, points, last_ts) "
+                                 + "VALUES (s.room, s.player, s.points, s.last_ts)")) {
+                for (ScoreEntry e : batch) {
+                    ps.setString(1, e.player);
+                    ps.setString(2, e.room);
+                    ps.setInt(3, e.points);
+                    ps.setLong(4, e.timestamp);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                for (Map.Entry<String, Long> p : players.entrySet()) {
+                    player.setString(1, p.getKey());
+                    player.setLong(2, p.getValue());
+                    player.addBatch();
+                }
+                player.executeBatch();
+                for (Map.Entry<String, Map<String, long[]>> r : rooms.entrySet()) {
+                    for (Map.Entry<String, long[]> p : r.getValue().entrySet()) {
+                        room.setString(1, r.getKey());
+                        room.setString(2, p.getKey());
+                        room.setLong(3, p.getValue()[0]);
+                        room.setLong(4, p.getValue()[1]);
+                        room.addBatch();
+                    }
+                }
+                room.executeBatch();
+                writeConnection.commit();
+            } catch (SQLException ex) {
+                try {
+                    writeConnection.rollback();
+                } catch (SQLException ignored) {}
+                throw new IOException("No se pudo guardar el lote de puntajes", ex);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Cada lote ya se confirmó con commit
+        }
+    }
+
+    @Override
+    public void saveScore(String player, int points, String room) {
+        // GameServer ya limita los nombres; esto cubre salas restauradas de antes del límite
+        if (player.length() > NAME_COLUMN) player = player.substring(0, NAME_COLUMN);
+        // Un puntaje descartado por la cola llena tampoco entra en la clasificación
+        if (scoreWriter.submit(new ScoreEntry(player, room, points, System.currentTimeMillis()))) {
+            leaderboard.record(player, room, points);
+        }
+    }
+
+    @Override
+    public Leaderboard getLeaderboard() { return leaderboard; }
+
+    @Override
+    public int getScoreBacklog() { return scoreWriter.backlog(); }
+
+    @Override
+    public File getDataDir() { return dataDir; }
+
+    @Override
+    public void exportScoresXML(Writer out) throws IOException {
+        try {
+            scoreWriter.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando puntajes pendientes");
+        }
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<scores>\n");
+        try (Connection c = connect();
+             Statement st = c.createStatement()) {
+            st.setFetchSize(1000);
+            try (ResultSet rs = st.executeQuery("SELECT player, room, points FROM scores ORDER BY id")) {
+                while (rs.next()) {
+                    out.write("    <entry player=\"");
+                    out.write(Xml.escape(rs.getString(1)));
+                    out.write("\" room=\"");
+                    out.write(Xml.escape(rs.getString(2)));
+                    out.write("\" points=\"");
+                    out.write(Integer.toString(rs.getInt(3)));
+                    out.write("\"/>\n");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("No se pudo exportar los puntajes", e);
+        }
+        out.write("</scores>\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        scoreWriter.close();
+        try {
+            writeConnection.close();
+        } catch (SQLException e) {
+            LOG.error("No se pudo cerrar la base embebida", e);
+        }
+    }
+}
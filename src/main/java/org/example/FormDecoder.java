@@ -0,0 +1,278 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Lectura de parámetros application/x-www-form-urlencoded directamente
+ * sobre bytes.
+ *
+ * El cuerpo se lee en un buffer prestado de un pool acotado
+ * (-Djuego.http.maxBody, 8192 bytes por defecto; más grande se rechaza con
+ * TooLargeException) y se decodifica en el lugar: '+' y %XX se reescriben
+ * sobre el mismo arreglo. El pool no depende de los hilos, así que sirve
+ * igual con hilos virtuales (-Djuego.executor=virtual), donde cada petición
+ * corre en un hilo nuevo.
+ * Sólo se crean Strings para los campos que el servidor conoce; el resto
+ * se salta sin decodificar. No hay split, URLDecoder ni mapas por petición.
+ *
+ * Los nombres de campo se comparan tal cual llegan, sin decodificar: los
+ * clientes no codifican letras ASCII. Un campo numérico vacío cuenta como
+ * ausente.
+ */
+public final class FormDecoder {
+
+    public static final int MAX_BODY = Integer.getInteger("juego.http.maxBody", 8192);
+
+    // Buffers libres; si se agotan se crea uno nuevo y al devolverlo se descarta si el pool está lleno
+    private static final ArrayBlockingQueue<byte[]> BUFFERS =
+            new ArrayBlockingQueue<>(Integer.getInteger("juego.http.bufferPool", 64));
+
+    private FormDecoder() {}
+
+    /** Cuerpo o consulta por encima de MAX_BODY; GameServer responde 413. */
+    public static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(long size) {
+            super("Petición demasiado grande (" + size + " bytes, máximo " + MAX_BODY + ")");
+        }
+    }
+
+    // ---------------------------------------------------------
+    // CAMPOS
+    // ---------------------------------------------------------
+
+    private static final int ROOM_ID = 0;
+    private static final int PLAYER_NAME = 1;
+    private static final int ANSWER = 2;
+    private static final int MAX_PLAYERS = 3;
+    private static final int SINCE_VERSION = 4;
+    private static final int LIMIT = 5;
+
+    private static final String[] NAMES = {"roomId", "playerName", "answer", "maxPlayers", "sinceVersion", "limit"};
+    private static final byte[][] NAME_BYTES = new byte[NAMES.length][];
+    static {
+        for (int i = 0; i < NAMES.length; i++) NAME_BYTES[i] = NAMES[i].getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Campos de una petición del juego; los numéricos valen -1 si no vinieron. */
+    public static final class Fields {
+        private String roomId;
+        private String playerName;
+        private String answer;
+        private int maxPlayers = -1;
+        private long sinceVersion = -1;
+        private int limit = -1;
+
+        public String roomId() { return roomId; }
+        public String playerName() { return playerName; }
+        public String playerName(String fallback) { return playerName != null ? playerName : fallback; }
+        /** Respuesta enviada, o "" si no vino. */
+        public String answer() { return answer != null ? answer : ""; }
+        public int maxPlayers(int fallback) { return maxPlayers >= 0 ? maxPlayers : fallback; }
+        public long sinceVersion() { return sinceVersion; }
+        public int limit(int fallback) { return limit >= 0 ? limit : fallback; }
+
+        /** Asigna un campo por nombre (protocolo binario); los desconocidos se ignoran y los números vacíos cuentan como ausentes. */
+        public void set(String name, String value) {
+            switch (name) {
+                case "roomId": roomId = value; break;
+                case "playerName": playerName = value; break;
+                case "answer": answer = value; break;
+                case "maxPlayers": maxPlayers = (int) parseNumber(value, Integer.MAX_VALUE); break;
+                case "sinceVersion": sinceVersion = parseNumber(value, Long.MAX_VALUE); break;
+                case "limit": limit = (int) parseNumber(value, Integer.MAX_VALUE); break;
+                default:
+            }
+        }
+
+        private void set(int field, byte[] b, int off, int len) {
+            switch (field) {
+                case ROOM_ID: roomId = new String(b, off, len, StandardCharsets.UTF_8); break;
+                case PLAYER_NAME: playerName = new String(b, off, len, StandardCharsets.UTF_8); break;
+                case ANSWER: answer = new String(b, off, len, StandardCharsets.UTF_8); break;
+                case MAX_PLAYERS: maxPlayers = (int) parseNumber(b, off, len, Integer.MAX_VALUE); break;
+                case SINCE_VERSION: sinceVersion = parseNumber(b, off, len, Long.MAX_VALUE); break;
+                case LIMIT: limit = (int) parseNumber(b, off, len, Integer.MAX_VALUE); break;
+                default:
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("{");
+            if (roomId != null) sb.append("roomId=").append(roomId).append(", ");
+            if (playerName != null) sb.append("playerName=").append(playerName).append(", ");
+            if (answer != null) sb.append("answer=").append(answer).append(", ");
+            if (maxPlayers >= 0) sb.append("maxPlayers=").append(maxPlayers).append(", ");
+            if (sinceVersion >= 0) sb.append("sinceVersion=").append(sinceVersion).append(", ");
+            if (limit >= 0) sb.append("limit=").append(limit).append(", ");
+            if (sb.length() > 1) sb.setLength(sb.length() - 2);
+            return sb.append('}').toString();
+        }
+    }
+
+    // ---------------------------------------------------------
+    // LECTURA
+    // ---------------------------------------------------------
+
+    /**
+     * Campos de la consulta (GET) y del cuerpo; los del cuerpo tienen
+     * prioridad. Un formulario mal codificado lanza IllegalArgumentException.
+     */
+    public static Fields decode(HttpExchange ex) throws IOException {
+        Fields fields = new Fields();
+        String query = ex.getRequestURI().getRawQuery();
+        if (query != null) decode(query, fields);
+
+        String declared = ex.getRequestHeaders().getFirst("Content-Length");
+        if (declared != null) {
+            long length;
+            try {
+                length = Long.parseLong(declared.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Content-Length inválido");
+            }
+            // Se rechaza sin leer el cuerpo
+            if (length > MAX_BODY) throw new TooLargeException(length);
+        }
+
+        byte[] buf = borrow();
+        try {
+            int n = readBody(ex.getRequestBody(), buf);
+            decodeInPlace(buf, 0, n, fields);
+        } finally {
+            release(buf);
+        }
+        return fields;
+    }
+
+    /** Decodifica un formulario ya leído (consulta, pruebas). */
+    public static Fields decode(String form) throws TooLargeException {
+        Fields fields = new Fields();
+        if (form != null) decode(form, fields);
+        return fields;
+    }
+
+    // Copia el texto a un buffer prestado; la forma codificada es ASCII
+    private static void decode(String form, Fields fields) throws TooLargeException {
+        int len = form.length();
+        if (len > MAX_BODY) throw new TooLargeException(len);
+        byte[] buf = borrow();
+        try {
+            for (int i = 0; i < len; i++) {
+                char c = form.charAt(i);
+                if (c > 0x7f) {
+                    // Caracteres sin codificar: se pasa por UTF-8 (camino poco frecuente)
+                    byte[] utf8 = form.getBytes(StandardCharsets.UTF_8);
+                    if (utf8.length > MAX_BODY) throw new TooLargeException(utf8.length);
+                    decodeInPlace(utf8, 0, utf8.length, fields);
+                    return;
+                }
+                buf[i] = (byte) c;
+            }
+            decodeInPlace(buf, 0, len, fields);
+        } finally {
+            release(buf);
+        }
+    }
+
+    private static byte[] borrow() {
+        byte[] buf = BUFFERS.poll();
+        return buf != null ? buf : new byte[MAX_BODY];
+    }
+
+    private static void release(byte[] buf) {
+        BUFFERS.offer(buf);
+    }
+
+    private static int readBody(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        int r;
+        while (n < buf.length && (r = in.read(buf, n, buf.length - n)) != -1) n += r;
+        // Buffer lleno: si todavía queda cuerpo (chunked sin longitud) es demasiado grande
+        if (n == buf.length && in.read() != -1) throw new TooLargeException(n + 1L);
+        return n;
+    }
+
+    /** Recorre los pares clave=valor de b[from, to) y decodifica en el lugar los conocidos. */
+    static void decodeInPlace(byte[] b, int from, int to, Fields into) {
+        int i = from;
+        while (i < to) {
+            int start = i;
+            int eq = -1;
+            while (i < to && b[i] != '&') {
+                if (eq < 0 && b[i] == '=') eq = i;
+                i++;
+            }
+            int end = i++;
+            if (eq < 0) continue; // par sin '=': se ignora
+
+            int field = field(b, start, eq);
+            if (field < 0) continue;
+            into.set(field, b, eq + 1, unescape(b, eq + 1, end));
+        }
+    }
+
+    private static int field(byte[] b, int from, int to) {
+        int len = to - from;
+        for (int f = 0; f < NAME_BYTES.length; f++) {
+            byte[] name = NAME_BYTES[f];
+            if (name.length != len) continue;
+            int i = 0;
+            while (i < len && b[from + i] == name[i]) i++;
+            if (i == len) return f;
+        }
+        return -1;
+    }
+
+    // Reescribe '+' y %XX sobre el mismo arreglo; devuelve la longitud decodificada
+    private static int unescape(byte[] b, int from, int to) {
+        int w = from;
+        for (int r = from; r < to; r++) {
+            byte c = b[r];
+            if (c == '+') {
+                b[w++] = ' ';
+            } else if (c == '%') {
+                int hi = r + 2 < to ? hex(b[r + 1]) : -1;
+                int lo = hi >= 0 ? hex(b[r + 2]) : -1;
+                if (lo < 0) throw new IllegalArgumentException("Escape % inválido");
+                b[w++] = (byte) (hi << 4 | lo);
+                r += 2;
+            } else {
+                b[w++] = c;
+            }
+        }
+        return w - from;
+    }
+
+    private static int hex(byte c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    private static long parseNumber(byte[] b, int off, int len, long max) {
+        if (len == 0) return -1; // "limit=" equivale a no enviarlo
+        if (len > 19) throw new IllegalArgumentException("Número inválido");
+        long v = 0;
+        for (int i = off; i < off + len; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) throw new IllegalArgumentException("Número inválido");
+            v = v * 10 + d;
+            if (v < 0 || v > max) throw new IllegalArgumentException("Número fuera de rango");
+        }
+        return v;
+    }
+
+    private static long parseNumber(String s, long max) {
+        byte[] b = s.getBytes(StandardCharsets.US_ASCII);
+        return parseNumber(b, 0, b.length, max);
+    }
+}
@@ -0,0 +1,102 @@
+package org.example;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cliente del protocolo binario: una sola conexión que se reutiliza para
+ * todas las peticiones y se reabre si se cae.
+ *
+ * Una petición se repite sola sólo si no pudo haberse ejecutado: la trama
+ * no llegó a salir entera por una conexión guardada que ya estaba rota, o
+ * la operación es de lectura. Si falla después (timeout, corte a mitad de
+ * la respuesta) crear sala, unirse o responder no se repiten: el servidor
+ * puede haberlas ejecutado y el error se informa a quien llama.
+ */
+public class FrameClient implements Closeable {
+
+    // Las respuestas no tienen el límite de las peticiones, pero sí un tope sano
+    private static final int MAX_REPLY = 16 * 1024 * 1024;
+    // Operaciones sin efectos: repetirlas nunca cambia el estado
+    private static final Set<String> READ_ONLY = new HashSet<>(Arrays.asList("/get_status", "/leaderboard"));
+
+    private final String host;
+    private final int port;
+
+    // Protegidos por el monitor de this
+    private Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private int nextId = 1;
+    // true cuando la última trama salió entera hacia el servidor
+    private boolean sent;
+
+    public FrameClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Ejecuta una operación (ruta HTTP equivalente) y espera su respuesta.
+     * Si la conexión guardada estaba rota se reintenta una vez con una nueva,
+     * siempre que repetir no pueda duplicar la operación.
+     */
+    public synchronized Reply call(String path, Map<String, String> params) throws IOException {
+        boolean reused = socket != null;
+        try {
+            return exchange(path, params);
+        } catch (IOException e) {
+            closeQuietly();
+            if (!reused || (sent && !READ_ONLY.contains(path))) throw e;
+            return exchange(path, params);
+        }
+    }
+
+    private Reply exchange(String path, Map<String, String> params) throws IOException {
+        sent = false;
+        if (socket == null) connect();
+
+        int id = nextId++;
+        ByteBuffer req = FrameProtocol.encodeRequest(id, FrameProtocol.opCode(path), params);
+        // Una trama incompleta no se ejecuta: hasta acá el fallo es seguro de repetir
+        out.write(req.array(), req.arrayOffset(), req.remaining());
+        out.flush();
+        sent = true;
+
+        int len = in.readInt();
+        if (len < 6 || len > MAX_REPLY) throw new IOException("Respuesta inválida: " + len);
+        int replyId = in.readInt();
+        int code = in.readUnsignedShort();
+        byte[] xml = new byte[len - 6];
+        in.readFully(xml);
+        if (replyId != id) throw new IOException("Respuesta fuera de orden: " + replyId + " != " + id);
+
+        return new Reply(code, new String(xml, StandardCharsets.UTF_8));
+    }
+
+    private void closeQuietly() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+        socket = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeQuietly();
+    }
+}
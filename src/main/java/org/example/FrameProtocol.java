@@ -0,0 +1,126 @@
+package org.example;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Protocolo binario de tramas con prefijo de longitud. El servidor lo
+ * escucha sólo si se indica -Djuego.frames.port (p. ej. 5556).
+ *
+ *   petición:  [int longitud][int id][byte operación][short n]{[str clave][str valor]}*n
+ *   respuesta: [int longitud][int id][short código][bytes UTF-8 del XML]
+ *
+ * La longitud no se cuenta a sí misma; str es [short bytes][UTF-8]. Las
+ * operaciones son las mismas que las rutas HTTP y las respuestas llevan el
+ * mismo XML, así que el cliente puede usar cualquiera de los dos transportes.
+ * El id se devuelve tal cual para poder enviar varias peticiones seguidas.
+ */
+public final class FrameProtocol {
+
+    public static final int MAX_FRAME = 64 * 1024;
+
+    // El código de operación es la posición en esta tabla
+    private static final String[] OPERATIONS = {
+            null,
+            "/create_room",
+            "/join_room",
+            "/start_game",
+            "/submit_answer",
+            "/next_round",
+            "/get_status",
+            "/leave_room",
+            "/leaderboard"
+    };
+
+    private FrameProtocol() {}
+
+    public static int opCode(String path) {
+        for (int i = 1; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i].equals(path)) return i;
+        }
+        throw new IllegalArgumentException("Operación sin código binario: " + path);
+    }
+
+    /** Ruta de la operación o null si el código no existe. */
+    public static String path(int op) {
+        return op > 0 && op < OPERATIONS.length ? OPERATIONS[op] : null;
+    }
+
+    // ---------------------------------------------------------
+    // PETICIONES
+    // ---------------------------------------------------------
+
+    public static ByteBuffer encodeRequest(int id, int op, Map<String, String> fields) {
+        byte[][] encoded = new byte[fields.size() * 2][];
+        int size = 4 + 1 + 2;
+        int i = 0;
+        for (Map.Entry<String, String> f : fields.entrySet()) {
+            encoded[i] = utf8(f.getKey());
+            encoded[i + 1] = utf8(f.getValue());
+            size += 4 + encoded[i].length + encoded[i + 1].length;
+            i += 2;
+        }
+        if (size > MAX_FRAME) throw new IllegalArgumentException("Petición demasiado grande: " + size + " bytes");
+
+        ByteBuffer buf = ByteBuffer.allocate(4 + size);
+        buf.putInt(size).putInt(id).put((byte) op).putShort((short) fields.size());
+        for (byte[] s : encoded) {
+            buf.putShort((short) s.length).put(s);
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * Lee los campos de una petición; el buffer está posicionado después de
+     * id y operación, y su límite es el final de la trama.
+     */
+    public static FormDecoder.Fields decodeFields(ByteBuffer frame) {
+        try {
+            int n = frame.getShort() & 0xffff;
+            FormDecoder.Fields fields = new FormDecoder.Fields();
+            for (int i = 0; i < n; i++) {
+                String key = readString(frame);
+                fields.set(key, readString(frame));
+            }
+            return fields;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Trama incompleta");
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getShort() & 0xffff;
+        if (len > buf.remaining()) throw new BufferUnderflowException();
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+        } else {
+            byte[] b = new byte[len];
+            buf.get(b);
+            s = new String(b, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static byte[] utf8(String s) {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xffff) throw new IllegalArgumentException("Campo demasiado largo");
+        return b;
+    }
+
+    // ---------------------------------------------------------
+    // RESPUESTAS
+    // ---------------------------------------------------------
+
+    public static ByteBuffer encodeReply(int id, Reply reply) {
+        byte[] xml = reply.bytes();
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + 2 + xml.length);
+        buf.putInt(4 + 2 + xml.length).putInt(id).putShort((short) reply.code).put(xml);
+        buf.flip();
+        return buf;
+    }
+}
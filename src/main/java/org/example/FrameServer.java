@@ -0,0 +1,214 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Servidor del protocolo binario (ver FrameProtocol) sobre un Selector NIO.
+ *
+ * Un único hilo acepta conexiones, lee y corta las tramas y escribe las
+ * respuestas; cada conexión es larga y sirve muchas peticiones sin
+ * handshake ni parseo de texto. Las operaciones del juego corren en el
+ * ejecutor recibido (pueden tocar disco) y sus respuestas vuelven al hilo
+ * del selector por una cola.
+ */
+public class FrameServer implements Closeable {
+
+    private static final Log LOG = Log.get(FrameServer.class);
+
+    private final Map<String, GameServer.Operation> operations;
+    private final Executor executor;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    // Conexiones con respuestas nuevas; sólo el hilo del selector cambia sus intereses
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    public FrameServer(int port, Map<String, GameServer.Operation> operations,
+                       Executor executor) throws IOException {
+        this.operations = operations;
+        this.executor = executor;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public void start() {
+        Thread t = new Thread(this::run, "frame-selector");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final InetAddress address;
+        final ByteBuffer in = ByteBuffer.allocate(4 + FrameProtocol.MAX_FRAME);
+        final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.address = channel.socket().getInetAddress();
+        }
+    }
+
+    // ---------------------------------------------------------
+    // BUCLE DEL SELECTOR
+    // ---------------------------------------------------------
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+
+                Connection c;
+                while ((c = writable.poll()) != null) {
+                    if (c.key.isValid()) c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable()) read((Connection) key.attachment());
+                        if (key.isValid() && key.isWritable()) write((Connection) key.attachment());
+                    } catch (IOException | RuntimeException e) {
+                        close(key);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                LOG.warn("Error en el selector binario: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void accept() {
+        SocketChannel ch;
+        try {
+            while ((ch = serverChannel.accept()) != null) {
+                ch.configureBlocking(false);
+                ch.socket().setTcpNoDelay(true);
+                SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(ch, key));
+            }
+        } catch (IOException e) {
+            LOG.warn("No se pudo aceptar una conexión binaria: {}", e.getMessage());
+        }
+    }
+
+    private void read(Connection c) throws IOException {
+        if (c.channel.read(c.in) < 0) {
+            close(c.key);
+            return;
+        }
+
+        ByteBuffer in = c.in;
+        in.flip();
+        while (in.remaining() >= 4) {
+            int len = in.getInt(in.position());
+            if (len < 7 || len > FrameProtocol.MAX_FRAME) throw new IOException("Trama inválida: " + len);
+            if (in.remaining() < 4 + len) break;
+
+            int end = in.position() + 4 + len;
+            in.position(in.position() + 4);
+            int id = in.getInt();
+            int op = in.get() & 0xff;
+            ByteBuffer frame = in.duplicate();
+            frame.limit(end);
+            in.position(end);
+
+            dispatch(c, id, op, frame);
+        }
+        in.compact();
+    }
+
+    // Decodifica en el hilo del selector y ejecuta la operación en el ejecutor
+    private void dispatch(Connection c, int id, int op, ByteBuffer frame) {
+        String path = FrameProtocol.path(op);
+        GameServer.Operation operation = path == null ? null : operations.get(path);
+        if (operation == null) {
+            reply(c, id, new Reply(400, "<response><status>ERROR</status><msg>Operación desconocida</msg></response>"));
+            return;
+        }
+
+        FormDecoder.Fields params;
+        try {
+            params = FrameProtocol.decodeFields(frame);
+        } catch (IllegalArgumentException e) {
+            reply(c, id, new Reply(400, "<response><status>ERROR</status><msg>Trama inválida</msg></response>"));
+            return;
+        }
+        // Los mismos límites por cliente que en HTTP
+        if (!GameServer.allowed(path, c.address, params)) {
+            reply(c, id, GameServer.TOO_MANY);
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                Reply r;
+                try {
+                    r = operation.handle(params);
+                } catch (RuntimeException e) {
+                    LOG.error("Fallo en la operación {}", path, e);
+                    r = new Reply(500, "<response><status>ERROR</status><msg>Error del servidor</msg></response>");
+                }
+                reply(c, id, r);
+            });
+        } catch (RejectedExecutionException e) {
+            reply(c, id, new Reply(503, "<response><status>ERROR</status><msg>Servidor ocupado</msg></response>"));
+        }
+    }
+
+    private void reply(Connection c, int id, Reply r) {
+        c.out.add(FrameProtocol.encodeReply(id, r));
+        writable.add(c);
+        selector.wakeup();
+    }
+
+    private void write(Connection c) throws IOException {
+        ByteBuffer buf;
+        while ((buf = c.out.peek()) != null) {
+            c.channel.write(buf);
+            if (buf.hasRemaining()) return; // el socket está lleno: se sigue cuando vuelva a ser escribible
+            c.out.poll();
+        }
+        c.key.interestOps(SelectionKey.OP_READ);
+        // una respuesta pudo llegar entre el último peek y el cambio de intereses
+        if (!c.out.isEmpty()) c.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.close();
+        serverChannel.close();
+    }
+}
@@ -38,6 +38,10 @@ public class GameClientGUI extends Application {
     private boolean hasAnswered = false;
     private boolean isHost = false;
     private boolean gameStarted = false;
+    // Con -Djuego.protocol=binary las peticiones van por una conexión persistente
+    // (el servidor debe arrancar con el mismo -Djuego.frames.port)
+    private final FrameClient frameClient = "binary".equalsIgnoreCase(System.getProperty("juego.protocol"))
+            ? new FrameClient("localhost", Integer.getInteger("juego.frames.port", 5556)) : null;
 
 
     public static void main(String[] args) {
@@ -218,7 +222,7 @@ public class GameClientGUI extends Application {
 
             if (response.contains("<status>OK</status>")) {
                 roomId = extractValue(response, "roomId");
-                startPollingStatus();
+                startEventStream();
                 isHost = true;
                 showAlert("¡Éxito! 🎉",
                         "Sala creada exitosamente\n\n" +
@@ -247,7 +251,7 @@ public class GameClientGUI extends Application {
 
             if (response.contains("<status>OK</status>")) {
                 roomId = code.toUpperCase();
-                startPollingStatus();
+                startEventStream();
                 isHost = false;
                 showAlert("¡Éxito! 🎉", "Te has unido a la sala " + roomId, Alert.AlertType.INFORMATION);
                 showMainMenu();
@@ -783,6 +787,14 @@ public class GameClientGUI extends Application {
 // ============================================================
 
     private String sendPost(String endpoint, String data) {
+        if (frameClient != null) {
+            try {
+                return frameClient.call(endpoint, formFields(data)).xml;
+            } catch (IOException e) {
+                System.err.println("⚠️ Protocolo binario no disponible, se usa HTTP: " + e.getMessage());
+            }
+        }
+
         try (Socket socket = new Socket("localhost", 5555)) {
 
             // Construir petición HTTP POST manualmente
@@ -822,6 +834,16 @@ public class GameClientGUI extends Application {
         }
     }
 
+    // Campos "clave=valor&..." tal como los arma el cliente
+    private static Map<String, String> formFields(String data) {
+        Map<String, String> fields = new HashMap<>();
+        for (String pair : data.split("&")) {
+            String[] kv = pair.split("=", 2);
+            if (kv.length == 2) fields.put(kv[0], kv[1]);
+        }
+        return fields;
+    }
+
 // ============================================================
 //                   EXTRAER VALORES DEL XML
 // ============================================================
@@ -884,7 +906,8 @@ public class GameClientGUI extends Application {
         // Cargar imagen de forma asíncrona
         new Thread(() -> {
             try {
-                String imageUrl = "http://localhost:5555/" + imagePath;
+                // Variante del tamaño en que se muestra (ver ImageServer)
+                String imageUrl = "http://localhost:5555/" + imagePath + "?w=200";
                 System.out.println("🔍 Cargando imagen desde: " + imageUrl);
 
                 Image img = new Image(imageUrl, true);
@@ -981,11 +1004,17 @@ public class GameClientGUI extends Application {
 
     private void startPollingStatus() {
         ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor();
+        // Última versión recibida: si la sala no cambió el servidor responde 304 sin cuerpo
+        String[] lastVersion = {""};
 
         poller.scheduleAtFixedRate(() -> {
             try {
                 String data = "roomId=" + roomId;
+                if (!lastVersion[0].isEmpty()) data += "&sinceVersion=" + lastVersion[0];
                 String response = sendPost("/get_status", data);
+                if (response.isEmpty()) return;
+                String version = extractValue(response, "version");
+                if (!version.isEmpty()) lastVersion[0] = version;
 
                 boolean started = extractValue(response, "started").equalsIgnoreCase("true");
                 if (started && !gameStarted) {
@@ -1017,6 +1046,187 @@ public class GameClientGUI extends Application {
     }
 
 
+    // ============================================================
+    //          FLUJO DE EVENTOS DEL SERVIDOR (/events, SSE)
+    // ============================================================
+
+    /**
+     * Escucha los eventos de la sala en una sola conexión abierta en vez de
+     * preguntar cada segundo. Si el servidor no ofrece /events, o la
+     * conexión se cae varias veces seguidas, se vuelve al sondeo.
+     */
+    private void startEventStream() {
+        final String streamRoom = roomId;
+        Thread t = new Thread(() -> {
+            int failures = 0;
+            while (streamRoom.equals(roomId) && failures < 3) {
+                int result = readEventStream(streamRoom);
+                if (result > 0) return;            // partida terminada o sala cerrada
+                if (result < 0) break;             // el servidor no tiene /events
+                failures++;
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (streamRoom.equals(roomId)) startPollingStatus();
+        }, "room-events");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // 1 = fin normal, 0 = conexión perdida, -1 = flujo no disponible
+    private int readEventStream(String streamRoom) {
+        try (Socket socket = new Socket("localhost", 5555)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /events?roomId=" + streamRoom + " HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Accept: text/event-stream\r\n" +
+                    "\r\n").getBytes("UTF-8"));
+            out.flush();
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String statusLine = readHeaderLine(in);
+            if (statusLine == null || !statusLine.contains(" 200")) return -1;
+
+            boolean chunked = false;
+            String header;
+            while ((header = readHeaderLine(in)) != null && !header.isEmpty()) {
+                if (header.toLowerCase().startsWith("transfer-encoding") && header.toLowerCase().contains("chunked")) {
+                    chunked = true;
+                }
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    chunked ? new ChunkedInputStream(in) : in, "UTF-8"));
+
+            String event = "message";
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    if (data.length() > 0 && handleEvent(event, data.toString())) return 1;
+                    event = "message";
+                    data.setLength(0);
+                } else if (line.startsWith("event:")) {
+                    event = line.substring(6).trim();
+                } else if (line.startsWith("data:")) {
+                    // varias líneas data: forman un solo mensaje separado por saltos de línea
+                    if (data.length() > 0) data.append('\n');
+                    data.append(line.substring(5).trim());
+                }
+                // las líneas que empiezan con ':' son latidos y se ignoran
+            }
+            return 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Devuelve true cuando ya no hace falta seguir escuchando
+    private boolean handleEvent(String event, String data) {
+        switch (event) {
+            case "status":
+                // la partida ya estaba en marcha al conectarse: igual que roundStarted
+                if (extractValue(data, "started").equalsIgnoreCase("true")) showFirstRound(data);
+                return false;
+            case "roundStarted":
+                showFirstRound(data);
+                return false;
+            case "gameOver":
+                updateScores(extractNamedScores(data));
+                return true;
+            case "closed":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void showFirstRound(String data) {
+        if (gameStarted) return;
+        gameStarted = true;
+
+        int round = 1;
+        try { round = Integer.parseInt(extractValue(data, "round")); } catch (NumberFormatException ignored) {}
+        String word = extractValue(data, "word");
+        String[] images = extractList(data, "img").toArray(new String[0]);
+        int timeLimit = Integer.parseInt(extractValue(data, "time"));
+
+        final int shownRound = round;
+        Platform.runLater(() -> showGameScreen(shownRound, word, images, timeLimit));
+    }
+
+    // Lee una línea de cabecera HTTP terminada en CRLF
+    private static String readHeaderLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') return sb.toString();
+            if (c != '\r') sb.append((char) c);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    // Cuerpo HTTP con Transfer-Encoding: chunked
+    private static final class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private int remaining = 0;
+        private boolean done = false;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        private boolean nextChunk() throws IOException {
+            if (done) return false;
+            String size = readHeaderLine(in);
+            while (size != null && size.isEmpty()) size = readHeaderLine(in); // CRLF del trozo anterior
+            if (size == null) { done = true; return false; }
+            int semi = size.indexOf(';');
+            remaining = Integer.parseInt((semi >= 0 ? size.substring(0, semi) : size).trim(), 16);
+            if (remaining == 0) { done = true; return false; }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0 && !nextChunk()) return -1;
+            int b = in.read();
+            if (b != -1) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0 && !nextChunk()) return -1;
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+    }
+
+    // Puntajes con el formato del servidor: <player name="...">N</player>
+    private Map<String, Integer> extractNamedScores(String xml) {
+        Map<String, Integer> scores = new HashMap<>();
+        int index = 0;
+        while (true) {
+            int start = xml.indexOf("<player name=\"", index);
+            if (start == -1) break;
+            int nameEnd = xml.indexOf("\">", start);
+            int end = xml.indexOf("</player>", nameEnd);
+            if (nameEnd == -1 || end == -1) break;
+            String name = xml.substring(start + 14, nameEnd);
+            try {
+                scores.put(name, Integer.parseInt(xml.substring(nameEnd + 2, end).trim()));
+            } catch (NumberFormatException ignored) {}
+            index = end + 9;
+        }
+        return scores;
+    }
+
+
     private List<String> extractList(String xml, String tag) {
         List<String> list = new ArrayList<>();
         int index = 0;
@@ -1,27 +1,128 @@
 package org.example;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.concurrent.locks.*;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sala de juego. Todo el estado visible vive en un {@link State} inmutable
+ * que se reemplaza con compare-and-set: cada unión, respuesta o cambio de
+ * ronda calcula el estado siguiente a partir del actual y sólo se aplica si
+ * nadie lo cambió entretanto (si no, se reintenta). Así las transiciones son
+ * atómicas sin un lock por sala, y los oyentes se avisan después de aplicar
+ * el cambio y una sola vez por transición.
+ */
 public class GameRoom {
 
+    private static final Log LOG = Log.get(GameRoom.class);
+
     private final String id;
     private final int maxPlayers;
-    private final List<String> players = new CopyOnWriteArrayList<>();
-    private final Map<String, Integer> scores = new ConcurrentHashMap<>();
-    private final Set<String> answered = ConcurrentHashMap.newKeySet();
+    private volatile String host; // jugador que creó la sala
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.initial());
+
+    // Fin automático de la ronda, en el temporizador compartido por todas las salas
+    private volatile RoundTimer.Timeout roundTimeout;
+
+    // Oyentes de cambios de estado (registro de salas, etc.)
+    private final List<RoomListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot statusSnapshot;
+    private volatile Snapshot roundSnapshot;
+
+    // Última petición de un cliente (ver RoomReaper)
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    // ---------------------------------------------------------
+    // ESTADO INMUTABLE
+    // ---------------------------------------------------------
+
+    /**
+     * Foto completa de la sala. La versión sube con cada transición; empieza
+     * en el reloj del arranque para que un número visto antes de un reinicio
+     * no vuelva a coincidir.
+     */
+    static final class State {
+        final long version;
+        final List<String> players;
+        final Map<String, Integer> scores;
+        final Set<String> answered;
+        final List<Round> rounds;
+        final int index;            // -1 antes de empezar, rounds.size() al terminar
+        final boolean started;
+        final boolean roundFinished;
+        final long roundStartTime;
+
+        State(long version, List<String> players, Map<String, Integer> scores, Set<String> answered,
+              List<Round> rounds, int index, boolean started, boolean roundFinished, long roundStartTime) {
+            this.version = version;
+            this.players = players;
+            this.scores = scores;
+            this.answered = answered;
+            this.rounds = rounds;
+            this.index = index;
+            this.started = started;
+            this.roundFinished = roundFinished;
+            this.roundStartTime = roundStartTime;
+        }
+
+        static State initial() {
+            return new State(System.currentTimeMillis() * 1000, Collections.emptyList(), Collections.emptyMap(),
+                    Collections.emptySet(), Collections.emptyList(), -1, false, true, 0L);
+        }
+
+        Round currentRound() {
+            return index >= 0 && index < rounds.size() ? rounds.get(index) : null;
+        }
+
+        boolean gameOver() {
+            return started && index >= rounds.size();
+        }
+
+        boolean allAnswered() {
+            return answered.containsAll(players);
+        }
+
+        State withPlayers(List<String> newPlayers, Map<String, Integer> newScores, Set<String> newAnswered) {
+            return new State(version + 1, Collections.unmodifiableList(newPlayers), Collections.unmodifiableMap(newScores),
+                    Collections.unmodifiableSet(newAnswered), rounds, index, started, roundFinished, roundStartTime);
+        }
 
-    private List<Round> rounds = new ArrayList<>();
-    private int index = -1;
-    private boolean started = false;
+        State withRound(List<Round> newRounds, int newIndex, boolean finished, long startTime, Set<String> newAnswered) {
+            return new State(version + 1, players, scores, Collections.unmodifiableSet(newAnswered),
+                    newRounds, newIndex, true, finished, startTime);
+        }
 
-    private final Lock lock = new ReentrantLock();
+        State withScore(String player, int total, boolean finished) {
+            Map<String, Integer> newScores = new HashMap<>(scores);
+            newScores.put(player, total);
+            Set<String> newAnswered = new HashSet<>(answered);
+            newAnswered.add(player);
+            return new State(version + 1, players, Collections.unmodifiableMap(newScores),
+                    Collections.unmodifiableSet(newAnswered), rounds, index, started, finished, roundStartTime);
+        }
 
-    // Scheduler para terminar rondas automáticamente
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private volatile boolean roundFinished = true;
-    private String host; // jugador que creó la sala
+        State withRoundFinished() {
+            return new State(version + 1, players, scores, answered, rounds, index, started, true, roundStartTime);
+        }
+    }
+
+    /** Respuesta ya renderizada de una versión concreta de la sala. */
+    public static final class Snapshot {
+        public final long version;
+        public final String xml;
+        public final byte[] bytes;
+        public final String etag;
+
+        Snapshot(String roomId, long version, String xml) {
+            this.version = version;
+            this.xml = xml;
+            this.bytes = xml.getBytes(StandardCharsets.UTF_8);
+            this.etag = "\"" + roomId + "." + version + "\"";
+        }
+    }
 
     public void setHost(String player) { this.host = player; }
     public boolean isHost(String player) { return host.equals(player); }
@@ -32,112 +133,287 @@ public class GameRoom {
         this.maxPlayers = maxPlayers;
     }
 
-    public boolean isFull() { return players.size() >= maxPlayers; }
-    public boolean hasPlayer(String p) { return players.contains(p); }
+    public String getId() { return id; }
+    public int getMaxPlayers() { return maxPlayers; }
+    public String getHost() { return host; }
+
+    public void addListener(RoomListener l) { listeners.add(l); }
+
+    public void touch() { lastActivity = System.currentTimeMillis(); }
+    public long getLastActivity() { return lastActivity; }
+
+    public boolean isFull() { return state.get().players.size() >= maxPlayers; }
+    public int getPlayerCount() { return state.get().players.size(); }
+    public boolean hasPlayer(String p) { return state.get().players.contains(p); }
 
-    public void addPlayer(String p) {
-        lock.lock();
-        try {
+    /**
+     * Une al jugador si hay lugar y el nombre está libre; la comprobación y
+     * la unión son una sola transición, así que dos uniones simultáneas no
+     * pueden pasarse de maxPlayers.
+     */
+    public boolean addPlayer(String p) {
+        while (true) {
+            State s = state.get();
+            if (s.players.size() >= maxPlayers || s.players.contains(p)) return false;
+
+            List<String> players = new ArrayList<>(s.players);
             players.add(p);
+            Map<String, Integer> scores = new HashMap<>(s.scores);
             scores.put(p, 0);
-        } finally { lock.unlock(); }
+            if (state.compareAndSet(s, s.withPlayers(players, scores, s.answered))) break;
+        }
+        for (RoomListener l : listeners) l.playerJoined(this, p);
+        return true;
     }
 
     public void removePlayer(String p) {
-        players.remove(p);
-        scores.remove(p);
-        answered.remove(p);
+        State s, next;
+        do {
+            s = state.get();
+            if (!s.players.contains(p)) return;
+
+            List<String> players = new ArrayList<>(s.players);
+            players.remove(p);
+            Map<String, Integer> scores = new HashMap<>(s.scores);
+            scores.remove(p);
+            Set<String> answered = new HashSet<>(s.answered);
+            answered.remove(p);
+            next = s.withPlayers(players, scores, answered);
+        } while (!state.compareAndSet(s, next));
+
+        for (RoomListener l : listeners) l.playerLeft(this, p);
     }
 
     public List<String> getPlayers() {
-        return new ArrayList<>(players);
+        return state.get().players;
     }
 
     // ---------------------------------------------------------
-    // INICIO DEL JUEGO
+    // CICLO DE RONDAS
     // ---------------------------------------------------------
 
-    public void startGame(List<Round> loaded) {
-        this.rounds = loaded;
-        this.index = 0;
-        this.started = true;
-        startCurrentRound();
+    /**
+     * Empieza la partida, o una nueva si la anterior terminó. Con una partida
+     * en curso no hace nada y devuelve false: entre varias llamadas
+     * simultáneas sólo una la inicia.
+     */
+    public boolean startGame(List<Round> loaded) {
+        State s, next;
+        do {
+            s = state.get();
+            if (s.started && !s.gameOver()) return false;
+            next = s.withRound(loaded, 0, false, System.currentTimeMillis(), Collections.emptySet());
+        } while (!state.compareAndSet(s, next));
+
+        for (RoomListener l : listeners) l.gameStarted(this, loaded);
+        roundStarted(next);
+        return true;
     }
 
-    private void startCurrentRound() {
-        Round r = rounds.get(index);
-        r.start();
+    /**
+     * Avanza a la siguiente ronda si la actual terminó. Entre varias llamadas
+     * simultáneas sólo una avanza; las demás ven la ronda nueva sin terminar
+     * y devuelven false.
+     */
+    public boolean nextRound() {
+        State s, next;
+        do {
+            s = state.get();
+            if (!s.started || !s.roundFinished || s.gameOver()) return false;
+            int newIndex = s.index + 1;
+            boolean last = newIndex >= s.rounds.size();
+            next = s.withRound(s.rounds, newIndex, last, last ? s.roundStartTime : System.currentTimeMillis(),
+                    Collections.emptySet());
+        } while (!state.compareAndSet(s, next));
+
+        if (next.gameOver()) {
+            for (RoomListener l : listeners) l.gameOver(this);
+            return false;
+        }
+        roundStarted(next);
+        return true;
+    }
 
-        // Resetea el set de jugadores que ya acertaron
-        answered.clear();
-        roundFinished = false;
+    // Avisa el inicio de la ronda ya aplicada y programa su fin por tiempo
+    private void roundStarted(State s) {
+        Round r = s.currentRound();
+        if (LOG.isInfoEnabled()) LOG.info("Sala {}: ronda {} iniciada", id, s.index + 1);
+        // la palabra es la respuesta: sólo en DEBUG
+        LOG.debug("Sala {}: palabra = {}", id, r.word);
+        for (RoomListener l : listeners) l.roundStarted(this, s.index, s.roundStartTime);
 
-        System.out.println("Ronda " + (index + 1) + " iniciada: palabra = " + r.word);
+        scheduleRoundEnd(s.index, r.timeLimit * 1000L);
+    }
 
-        // Programa el fin automático de la ronda por tiempo
-        scheduler.schedule(() -> {
-            roundFinished = true;
-            System.out.println("Ronda " + (index + 1) + " finalizada por tiempo.");
-        }, r.timeLimit, TimeUnit.SECONDS);
+    private void scheduleRoundEnd(int roundIndex, long delayMillis) {
+        cancelRoundTimeout();
+        roundTimeout = RoundTimer.shared().schedule(() -> {
+            if (finishRound(roundIndex)) {
+                if (LOG.isInfoEnabled()) LOG.info("Sala {}: ronda {} finalizada por tiempo", id, roundIndex + 1);
+            }
+        }, delayMillis);
     }
 
+    private void cancelRoundTimeout() {
+        RoundTimer.Timeout t = roundTimeout;
+        if (t != null) t.cancel();
+    }
 
-    public boolean nextRound() {
-        if (!roundFinished) return false; // No se puede avanzar hasta que termine la ronda
-        index++;
-        if (index >= rounds.size()) return false;
-        startCurrentRound();
+    // Marca la ronda como terminada una sola vez; el temporizador de una
+    // ronda anterior no puede cerrar la actual
+    private boolean finishRound(int roundIndex) {
+        State s;
+        do {
+            s = state.get();
+            if (s.roundFinished || s.index != roundIndex) return false;
+        } while (!state.compareAndSet(s, s.withRoundFinished()));
+
+        roundEnded(roundIndex);
         return true;
     }
 
+    private void roundEnded(int roundIndex) {
+        cancelRoundTimeout();
+        for (RoomListener l : listeners) l.roundEnded(this, roundIndex);
+    }
+
+    /** Libera el temporizador de la ronda; se llama cuando la sala desaparece. */
+    public void close() {
+        cancelRoundTimeout();
+    }
+
     public Round getCurrentRound() {
-        if (index < 0 || index >= rounds.size()) return null;
-        return rounds.get(index);
+        return state.get().currentRound();
+    }
+
+    public boolean isGameOver() {
+        return state.get().gameOver();
     }
 
     // ---------------------------------------------------------
-    // RESPUESTAS DE JUGADORES
+    // ESTADO PARA PERSISTENCIA (ver RoomJournal)
     // ---------------------------------------------------------
 
-    public SubmitResult submitAnswer(String player, String answer, XMLDatabase db) {
-        Round r = getCurrentRound();
-        if (r == null) return new SubmitResult(false, 0, "");
+    /** Estado completo leído de una sola vez: versión y contenido siempre coinciden. */
+    State currentState() { return state.get(); }
 
-        long elapsed = (System.currentTimeMillis() - r.startTime) / 1000;
-        boolean correct = answer.equalsIgnoreCase(r.word);
+    boolean isRoundFinished() { return state.get().roundFinished; }
+    int getScore(String player) { return state.get().scores.getOrDefault(player, 0); }
+
+    // La restauración ocurre antes de publicar la sala: no hay otros hilos
+    void restoreScore(String player, int total) {
+        State s = state.get();
+        if (!s.players.contains(player)) return;
+        Map<String, Integer> scores = new HashMap<>(s.scores);
+        scores.put(player, total);
+        state.set(s.withPlayers(s.players, scores, s.answered));
+    }
+
+    /**
+     * Reconstruye una partida en curso tras un reinicio. Si a la ronda aún le
+     * queda tiempo se reprograma su fin con el tiempo restante.
+     */
+    void restoreGame(List<Round> loaded, int roundIndex, long startTime,
+                     boolean finished, Collection<String> answeredPlayers) {
+        State s = state.get();
+        Set<String> answered = new HashSet<>(answeredPlayers);
+        answered.retainAll(s.players);
+
+        Round r = roundIndex >= 0 && roundIndex < loaded.size() ? loaded.get(roundIndex) : null;
+        long remaining = r == null ? 0 : startTime + r.timeLimit * 1000L - System.currentTimeMillis();
+        boolean done = finished || remaining <= 0 || answered.containsAll(s.players);
+
+        state.set(s.withRound(loaded, roundIndex, done, startTime, answered));
+        if (!done) scheduleRoundEnd(roundIndex, remaining);
+    }
+
+    // ---------------------------------------------------------
+    // RESPUESTAS DE JUGADORES
+    // ---------------------------------------------------------
+
+    /**
+     * Registra una respuesta. Puntaje, marca de acierto y cierre de la ronda
+     * (si era el último en acertar) se aplican en la misma transición, así
+     * que un acierto se cuenta una sola vez aunque llegue repetido. Después
+     * de terminada la ronda ya no se suman puntos.
+     */
+    public SubmitResult submitAnswer(String player, String answer, GameStorage db) {
+        State s, next;
+        int points;
+        do {
+            s = state.get();
+            Round r = s.currentRound();
+            if (r == null) return new SubmitResult(false, 0, "");
+
+            boolean correct = answer.equalsIgnoreCase(r.word);
+            if (!correct || s.roundFinished || !s.players.contains(player) || s.answered.contains(player)) {
+                return new SubmitResult(correct, 0, r.word);
+            }
 
-        int points = 0;
-        if (correct && !answered.contains(player)) {
             // Solo gana puntos la primera vez que acierta
+            long elapsed = (System.currentTimeMillis() - s.roundStartTime) / 1000;
             points = Math.max(100, 1000 - (int) elapsed * 30);
-            scores.put(player, scores.get(player) + points);
-            db.saveScore(player, points, id);
-        }
+            next = s.withScore(player, s.scores.get(player) + points, false);
+            if (next.allAnswered()) next = next.withRoundFinished();
+        } while (!state.compareAndSet(s, next));
 
-        // Marcar que el jugador ya acertó
-        if (correct) answered.add(player);
+        db.saveScore(player, points, id);
+        for (RoomListener l : listeners) l.scored(this, player, points, next.scores.get(player));
+        for (RoomListener l : listeners) l.answered(this, player);
 
         // Verificar si todos los jugadores han acertado
-        if (answered.containsAll(players)) {
-            roundFinished = true;
-            System.out.println("Ronda " + (index + 1) + " finalizada: todos los jugadores respondieron correctamente.");
+        if (next.roundFinished) {
+            roundEnded(next.index);
+            if (LOG.isInfoEnabled()) LOG.info("Sala {}: ronda {} finalizada, todos respondieron correctamente", id, next.index + 1);
         }
 
-        return new SubmitResult(correct, points, r.word);
+        return new SubmitResult(true, points, next.currentRound().word);
     }
 
 
+    // ---------------------------------------------------------
+    // VERSIONES Y RESPUESTAS CACHEADAS
+    // ---------------------------------------------------------
+
+    public long getVersion() { return state.get().version; }
+
+    /** Estado de la sala renderizado una vez por versión. */
+    public Snapshot getStatusSnapshot() {
+        State st = state.get();
+        Snapshot s = statusSnapshot;
+        if (s == null || s.version != st.version) {
+            s = new Snapshot(id, st.version, renderStatusXML(st));
+            statusSnapshot = s;
+        }
+        return s;
+    }
+
+    public Snapshot getRoundSnapshot() {
+        State st = state.get();
+        Snapshot s = roundSnapshot;
+        if (s == null || s.version != st.version) {
+            s = new Snapshot(id, st.version, renderRoundXML(st));
+            roundSnapshot = s;
+        }
+        return s;
+    }
+
+    public String getRoundXML() { return getRoundSnapshot().xml; }
+
+    public String getStatusXML() { return getStatusSnapshot().xml; }
+
     // ---------------------------------------------------------
     // EXPORTACIONES XML
     // ---------------------------------------------------------
 
-    public String getRoundXML() {
-        Round r = getCurrentRound();
+    private static String renderRoundXML(State st) {
+        Round r = st.currentRound();
         if (r == null) return "<response><status>NO_ROUND</status></response>";
 
         StringBuilder sb = new StringBuilder();
         sb.append("<response><status>OK</status>");
-        sb.append("<round>").append(index + 1).append("</round>");
+        sb.append("<version>").append(st.version).append("</version>");
+        sb.append("<round>").append(st.index + 1).append("</round>");
         sb.append("<word>").append(r.word).append("</word>");
         sb.append("<images>");
         for (String img : r.images)
@@ -150,13 +426,14 @@ public class GameRoom {
         return sb.toString();
     }
 
-    public String getStatusXML() {
-        Round r = getCurrentRound();
+    private static String renderStatusXML(State st) {
+        Round r = st.currentRound();
         StringBuilder sb = new StringBuilder();
         sb.append("<response><status>OK</status>");
-        sb.append("<started>").append(started).append("</started>");
-        if (r != null && !roundFinished) {
-            sb.append("<round>").append(index + 1).append("</round>");
+        sb.append("<version>").append(st.version).append("</version>");
+        sb.append("<started>").append(st.started).append("</started>");
+        if (r != null && !st.roundFinished) {
+            sb.append("<round>").append(st.index + 1).append("</round>");
             sb.append("<word>").append(r.word).append("</word>");
             sb.append("<images>");
             for (String img : r.images)
@@ -165,12 +442,7 @@ public class GameRoom {
             // <-- usar <time>
             sb.append("<time>").append(r.timeLimit).append("</time>");
         }
-        sb.append("<scores>");
-        players.forEach(p ->
-                sb.append("<player name=\"").append(p).append("\">")
-                        .append(scores.get(p)).append("</player>")
-        );
-        sb.append("</scores>");
+        appendScores(sb, st);
         sb.append("</response>");
         return sb.toString();
     }
@@ -178,14 +450,18 @@ public class GameRoom {
 
 
     public String getFinalResultsXML() {
-        StringBuilder sb = new StringBuilder("<response><status>GAME_OVER</status><scores>");
-
-        players.forEach(p ->
-                sb.append("<player name=\"").append(p).append("\">")
-                        .append(scores.get(p)).append("</player>")
-        );
-
-        sb.append("</scores></response>");
+        StringBuilder sb = new StringBuilder("<response><status>GAME_OVER</status>");
+        appendScores(sb, state.get());
+        sb.append("</response>");
         return sb.toString();
     }
+
+    private static void appendScores(StringBuilder sb, State st) {
+        sb.append("<scores>");
+        for (String p : st.players) {
+            sb.append("<player name=\"").append(p).append("\">")
+                    .append(st.scores.get(p)).append("</player>");
+        }
+        sb.append("</scores>");
+    }
 }
@@ -2,106 +2,158 @@ package org.example;
 
 import com.sun.net.httpserver.*;
 import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 
 public class GameServer {
 
+    private static final Log LOG = Log.get(GameServer.class);
+    // Con sobrecarga los rechazos llegan en ráfaga: se registra uno de cada mil
+    private static final Log.Sampler REJECT_SAMPLER = new Log.Sampler(1000);
+
     public static final Map<String, GameRoom> rooms = new ConcurrentHashMap<>();
-    public static final XMLDatabase database = new XMLDatabase();
+    // Backend elegido con -Djuego.storage (xml por defecto)
+    public static final GameStorage database = Storage.open();
+    // Registro de cambios de las salas para sobrevivir a reinicios
+    public static final RoomJournal roomJournal = new RoomJournal(
+            new File(database.getDataDir(), "rooms.log"),
+            Long.getLong("juego.rooms.compactBytes", 16L * 1024 * 1024));
+    // Flujos SSE de /events: los clientes reciben los cambios en vez de sondear
+    public static final RoomEvents roomEvents = new RoomEvents();
+    // Retira salas inactivas, terminadas o sobrantes
+    public static final RoomReaper roomReaper = new RoomReaper(rooms, roomJournal, roomEvents, database.getLeaderboard());
+    // Latencias, respuestas e indicadores expuestos en /metrics
+    public static final Metrics metrics = new Metrics();
+
+    /** Operación del juego, compartida por el servidor HTTP y el protocolo binario. */
+    interface Operation {
+        Reply handle(FormDecoder.Fields params);
+    }
+
+    // Control de admisión: cada clase de endpoint tiene su pool con cola acotada
+    // (-Djuego.http.<clase>.threads / .queue); sin lugar se responde 503 enseguida.
+    // Las operaciones livianas no esperan detrás de start_game ni de las imágenes.
+    static final Executor lightPool = pool("light", Integer.getInteger("juego.threads", 10), 200);
+    static final Executor heavyPool = pool("heavy", 4, 50);
+    static final Executor imagePool = pool("images", 4, 100);
+    static final Executor framePool = pool("frames", Integer.getInteger("juego.threads", 10), 1000);
+    private static final Set<String> HEAVY = new HashSet<>(Arrays.asList("/start_game", "/leaderboard"));
+
+    // Límite por cliente (peticiones por segundo, ráfaga del doble); 0 lo desactiva
+    private static final Map<String, RateLimiter> LIMITS = new HashMap<>();
+    static {
+        limit("/submit_answer", Integer.getInteger("juego.ratelimit.submit", 5));
+        limit("/get_status", Integer.getInteger("juego.ratelimit.status", 5));
+    }
+
+    private static Executor pool(String name, int threads, int queue) {
+        return ServerExecutors.bounded(ServerExecutors.configuredMode(),
+                Integer.getInteger("juego.http." + name + ".threads", threads),
+                Integer.getInteger("juego.http." + name + ".queue", queue), "http-" + name);
+    }
+
+    private static void limit(String path, int perSecond) {
+        if (perSecond > 0) LIMITS.put(path, new RateLimiter(perSecond, perSecond * 2));
+    }
+
+    // Ruta HTTP -> operación (el protocolo binario usa los mismos nombres)
+    static final Map<String, Operation> OPERATIONS = new LinkedHashMap<>();
+    static {
+        OPERATIONS.put("/create_room", GameServer::createRoom);
+        OPERATIONS.put("/join_room", GameServer::joinRoom);
+        OPERATIONS.put("/start_game", GameServer::startGame);
+        OPERATIONS.put("/submit_answer", GameServer::submitAnswer);
+        OPERATIONS.put("/next_round", GameServer::nextRound);
+        OPERATIONS.put("/get_status", GameServer::getStatus);
+        OPERATIONS.put("/leave_room", GameServer::leaveRoom);
+        OPERATIONS.put("/leaderboard", GameServer::leaderboard);
+    }
 
     public static void main(String[] args) {
         try {
-            HttpServer server = HttpServer.create(new InetSocketAddress(5555), 0);
-
-            server.createContext("/create_room", GameServer::createRoom);
-            server.createContext("/join_room", GameServer::joinRoom);
-            server.createContext("/start_game", GameServer::startGame);
-            server.createContext("/submit_answer", GameServer::submitAnswer);
-            server.createContext("/next_round", GameServer::nextRound);
-            server.createContext("/get_status", GameServer::getStatus);
-            server.createContext("/leave_room", GameServer::leaveRoom);
-
-            // HANDLER CORREGIDO PARA IMÁGENES
-            server.createContext("/data/imagenes", exchange -> {
-                try {
-                    // Obtener la ruta completa: /data/imagenes/perro1.png
-                    String requestPath = exchange.getRequestURI().getPath();
-                    System.out.println("📷 Petición de imagen: " + requestPath);
-
-                    // Remover el / inicial: data/imagenes/perro1.png
-                    String filePath = requestPath.substring(1);
-
-                    // Intentar cargar desde recursos
-                    InputStream imageStream = GameServer.class.getClassLoader()
-                            .getResourceAsStream(filePath);
-
-                    if (imageStream == null) {
-                        // Si no está en recursos, intentar desde filesystem
-                        File file = new File(filePath);
-                        if (file.exists() && file.isFile()) {
-                            imageStream = new FileInputStream(file);
-                            System.out.println("✓ Imagen encontrada en filesystem: " + filePath);
-                        }
-                    } else {
-                        System.out.println("✓ Imagen encontrada en recursos: " + filePath);
-                    }
+            // Restaurar las partidas que estaban en curso antes del reinicio
+            rooms.putAll(roomJournal.restore(database::loadRounds));
+            for (GameRoom room : rooms.values()) {
+                room.addListener(roomJournal);
+                room.addListener(roomEvents);
+            }
+            roomJournal.setLiveRooms(rooms::values);
+            roomReaper.start(Long.getLong("juego.rooms.reapSeconds", 30L));
+
+            // El servidor escribe cabeceras y cuerpo por separado: con Nagle, en
+            // una conexión persistente la respuesta esperaba el ACK retrasado
+            // del cliente (~40 ms por petición)
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
 
-                    if (imageStream == null) {
-                        System.err.println("❌ Imagen no encontrada: " + filePath);
-                        String error = "404 - Imagen no encontrada: " + filePath;
-                        exchange.sendResponseHeaders(404, error.length());
-                        exchange.getResponseBody().write(error.getBytes());
-                        exchange.getResponseBody().close();
+            // Conexiones pendientes de aceptar que el sistema operativo retiene
+            HttpServer server = HttpServer.create(new InetSocketAddress(5555),
+                    Integer.getInteger("juego.http.backlog", 128));
+
+            for (Map.Entry<String, Operation> op : OPERATIONS.entrySet()) {
+                String path = op.getKey();
+                Operation operation = op.getValue();
+                server.createContext(path, admit(path, HEAVY.contains(path) ? heavyPool : lightPool, ex -> {
+                    FormDecoder.Fields params = requestParams(ex);
+                    if (params == null) return;
+                    if (!allowed(path, ex.getRemoteAddress().getAddress(), params)) {
+                        ex.getResponseHeaders().set("Retry-After", "1");
+                        respond(ex, TOO_MANY);
                         return;
                     }
+                    Reply reply = operation.handle(params);
+                    respond(ex, reply);
+                    if (LOG.isDebugEnabled()) LOG.debug("{} {} -> {}", path, params, reply.code);
+                }));
+            }
+            server.createContext("/events", admit("/events", lightPool, GameServer::events));
 
-                    // Determinar tipo MIME
-                    String mime = "image/png";
-                    if (filePath.endsWith(".jpg") || filePath.endsWith(".jpeg")) {
-                        mime = "image/jpeg";
-                    } else if (filePath.endsWith(".gif")) {
-                        mime = "image/gif";
-                    }
-
-                    // Leer bytes de la imagen (compatible con Java 8)
-                    byte[] imageBytes = readAllBytes(imageStream);
-                    imageStream.close();
-
-                    // Enviar respuesta
-                    exchange.getResponseHeaders().set("Content-Type", mime);
-                    exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-                    exchange.sendResponseHeaders(200, imageBytes.length);
+            // Imágenes con caché, validadores y rangos (ver ImageServer)
+            server.createContext("/data/imagenes", admit("/data/imagenes", imagePool,
+                    new ImageServer(new File(database.getDataDir(), "imagenes-variantes"))));
 
-                    OutputStream os = exchange.getResponseBody();
-                    os.write(imageBytes);
-                    os.close();
+            // Sin pool: se atiende en el hilo despachador para que responda aun
+            // cuando los pools estén llenos, que es cuando más interesa mirarlo
+            registerGauges();
+            server.createContext("/metrics", GameServer::metrics);
 
-                    System.out.println("✓ Imagen enviada: " + filePath +
-                            " (" + imageBytes.length + " bytes)");
+            // Sin ejecutor propio: el hilo despachador sólo decide la admisión
+            // y pasa cada petición al pool de su clase (ver admit)
+            server.start();
 
-                } catch (Exception e) {
-                    System.err.println("❌ Error al servir imagen: " + e.getMessage());
-                    e.printStackTrace();
+            // Protocolo binario opcional con conexiones persistentes: sólo con -Djuego.frames.port=N
+            int framePort = Integer.getInteger("juego.frames.port", 0);
+            FrameServer frames = null;
+            if (framePort > 0) {
+                frames = new FrameServer(framePort, OPERATIONS, framePool);
+                frames.start();
+            }
 
-                    String error = "500 - Error del servidor";
-                    exchange.sendResponseHeaders(500, error.length());
-                    exchange.getResponseBody().write(error.getBytes());
-                    exchange.getResponseBody().close();
+            // Baja a disco los puntajes pendientes al apagar el servidor
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                database.close();
+                try {
+                    roomJournal.close();
+                } catch (IOException e) {
+                    LOG.error("No se pudo cerrar rooms.log", e);
                 }
-            });
-
-            server.setExecutor(Executors.newFixedThreadPool(10));
-            server.start();
+                Log.flush();
+            }));
 
-            System.out.println("🚀 Servidor iniciado en http://localhost:5555/");
-            System.out.println("📁 Sirviendo imágenes desde: data/imagenes/");
+            LOG.info("🚀 Servidor iniciado en http://localhost:5555/");
+            LOG.info("📁 Sirviendo imágenes desde: data/imagenes/");
+            LOG.info("🧵 Ejecutor HTTP: {}", ServerExecutors.configuredMode());
+            if (frames != null) LOG.info("🔌 Protocolo binario en el puerto {}", framePort);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("No se pudo iniciar el servidor", e);
         }
     }
 
@@ -109,40 +161,159 @@ public class GameServer {
     // UTILIDADES
     // -----------------------------------------------------------------
 
-    // Método auxiliar para leer todos los bytes (compatible con Java 8)
-    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[16384];
-        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
+    /**
+     * Envuelve un handler para que corra en {@code pool}. Si el pool está
+     * lleno se contesta 503 con Retry-After sin leer la petición, así la
+     * sobrecarga se rechaza rápido en vez de acumular latencia. La latencia
+     * medida en /metrics incluye la espera en la cola del pool.
+     */
+    private static HttpHandler admit(String path, Executor pool, HttpHandler handler) {
+        Metrics.Endpoint endpoint = metrics.endpoint(path);
+        return ex -> {
+            long start = System.nanoTime();
+            try {
+                pool.execute(() -> {
+                    try {
+                        handler.handle(ex);
+                    } catch (Exception e) {
+                        LOG.error("Fallo al atender {}", ex.getRequestURI(), e);
+                        ex.close();
+                    } finally {
+                        // -1 si no llegó a responder: cuenta como 5xx
+                        endpoint.record(ex.getResponseCode(), start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                ex.getResponseHeaders().set("Retry-After", Integer.toString(Integer.getInteger("juego.http.retryAfter", 1)));
+                respond(ex, 503, "<response><status>ERROR</status><msg>Servidor ocupado</msg></response>");
+                endpoint.record(503, start);
+                if (REJECT_SAMPLER.sample()) LOG.warn("Servidor ocupado, rechazada {}", ex.getRequestURI().getPath());
+            }
+        };
+    }
+
+    private static void registerGauges() {
+        metrics.gauge("juego_rooms", "Salas activas", null, rooms::size);
+        metrics.gauge("juego_players", "Jugadores en salas activas", null, () -> {
+            long players = 0;
+            for (GameRoom room : rooms.values()) players += room.getPlayerCount();
+            return players;
+        });
+        metrics.gauge("juego_sse_subscribers", "Flujos de /events abiertos", null, roomEvents::subscriberCount);
+        metrics.gauge("juego_sse_writer_queued", "Escrituras de /events esperando hilo", null, roomEvents::writerBacklog);
+        metrics.gauge("juego_timer_scheduled", "Fines de ronda programados en el temporizador", null,
+                () -> RoundTimer.shared().scheduledCount());
+        metrics.gauge("juego_timer_lag_seconds", "Retraso del hilo del temporizador", null,
+                () -> RoundTimer.shared().lagMillis() / 1000.0);
+        String[] names = {"light", "heavy", "images", "frames"};
+        Executor[] pools = {lightPool, heavyPool, imagePool, framePool};
+        for (int i = 0; i < pools.length; i++) {
+            Executor pool = pools[i];
+            String labels = "pool=\"" + names[i] + "\"";
+            metrics.gauge("juego_executor_queued", "Tareas esperando hilo en cada pool", labels, () -> ServerExecutors.queued(pool));
+            metrics.gauge("juego_executor_active", "Tareas en curso en cada pool", labels, () -> ServerExecutors.active(pool));
+        }
+        metrics.gauge("juego_score_backlog", "Puntajes aceptados aún sin escribir", null, database::getScoreBacklog);
+        metrics.gauge("juego_log_dropped", "Eventos de registro descartados por cola llena", null, Log::droppedCount);
+        metrics.gauge("juego_jvm_threads", "Hilos vivos de la JVM", null,
+                () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        metrics.gauge("juego_jvm_heap_used_bytes", "Heap en uso", null,
+                () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        metrics.counter("juego_jvm_gc_seconds_total", "Tiempo acumulado en recolección de basura", null, () -> {
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) millis += Math.max(0, gc.getCollectionTime());
+            return millis / 1000.0;
+        });
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean process = (com.sun.management.OperatingSystemMXBean) os;
+            metrics.counter("juego_process_cpu_seconds_total", "CPU acumulada del proceso", null,
+                    () -> process.getProcessCpuTime() / 1e9);
+        }
+    }
+
+    private static void metrics(HttpExchange ex) {
+        try {
+            byte[] out = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, out.length);
+            ex.getResponseBody().write(out);
+        } catch (Exception ignored) {
+        } finally {
+            ex.close();
         }
-        return buffer.toByteArray();
     }
 
-    private static Map<String, String> parseParams(String body) {
-        Map<String, String> params = new HashMap<>();
-        if (body == null) return params;
+    // Los nombres se guardan con los puntajes (VARCHAR(255) en la base embebida)
+    static final int MAX_NAME = Math.min(255, Integer.getInteger("juego.players.maxName", 64));
+    private static final Reply NAME_TOO_LONG = new Reply(400,
+            "<response><status>ERROR</status><msg>Nombre demasiado largo (máx. " + MAX_NAME + ")</msg></response>");
+
+    static final Reply TOO_MANY =
+            new Reply(429, "<response><status>ERROR</status><msg>Demasiadas peticiones</msg></response>");
+
+    /**
+     * Aplica el límite por cliente de la ruta, si tiene. Lo usan HTTP y el
+     * protocolo binario, así que cambiar de protocolo no da fichas nuevas.
+     */
+    static boolean allowed(String path, InetAddress address, FormDecoder.Fields params) {
+        RateLimiter limiter = LIMITS.get(path);
+        if (limiter == null) return true;
+        String key = clientKey(address, params);
+        if (limiter.tryAcquire(key)) return true;
+        if (REJECT_SAMPLER.sample()) LOG.warn("Límite de peticiones superado en {} ({})", path, key);
+        return false;
+    }
 
-        for (String pair : body.split("&")) {
-            String[] kv = pair.split("=", 2);
-            if (kv.length == 2) {
-                try {
-                    params.put(
-                            URLDecoder.decode(kv[0], StandardCharsets.UTF_8.name()),
-                            URLDecoder.decode(kv[1], StandardCharsets.UTF_8.name())
-                    );
-                } catch (UnsupportedEncodingException e) {
-                    // UTF-8 siempre está disponible
-                    e.printStackTrace();
-                }
-            }
+    // Un cliente es su IP, más la sala si existe, más el jugador si ya está en
+    // ella: varios jugadores detrás de la misma IP (un aula, una casa) tienen
+    // cada uno su balde, pero inventar nombres o salas no da baldes nuevos
+    private static String clientKey(InetAddress address, FormDecoder.Fields params) {
+        String ip = address.getHostAddress();
+        String roomId = params.roomId();
+        GameRoom room = roomId == null ? null : rooms.get(roomId);
+        if (room == null) return ip;
+        String player = params.playerName();
+        return player != null && room.hasPlayer(player) ? ip + "|" + roomId + "|" + player : ip + "|" + roomId;
+    }
+
+    /**
+     * Parámetros de la consulta (GET) y del cuerpo (ver FormDecoder). Si la
+     * petición es demasiado grande o está mal codificada ya se respondió
+     * 413 o 400 y devuelve null.
+     */
+    private static FormDecoder.Fields requestParams(HttpExchange ex) throws IOException {
+        try {
+            return FormDecoder.decode(ex);
+        } catch (FormDecoder.TooLargeException e) {
+            ex.getResponseHeaders().set("Connection", "close");
+            respond(ex, 413, "<response><status>ERROR</status><msg>Petición demasiado grande</msg></response>");
+        } catch (IllegalArgumentException e) {
+            respond(ex, 400, "<response><status>ERROR</status><msg>Parámetros inválidos</msg></response>");
         }
-        return params;
+        return null;
     }
 
-    private static String readBody(HttpExchange ex) throws IOException {
-        return new String(readAllBytes(ex.getRequestBody()), StandardCharsets.UTF_8);
+    // Con ETag: si el cliente ya tiene esa versión se contesta 304 sin cuerpo
+    private static void respond(HttpExchange ex, Reply reply) {
+        try {
+            int code = reply.code;
+            if (reply.etag != null) {
+                ex.getResponseHeaders().set("ETag", reply.etag);
+                if (reply.etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) code = 304;
+            }
+            if (code == 304) {
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] out = reply.bytes();
+            ex.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+            ex.sendResponseHeaders(code, out.length);
+            ex.getResponseBody().write(out);
+        } catch (Exception ignored) {
+        } finally {
+            ex.close();
+        }
     }
 
     private static void respond(HttpExchange ex, int code, String xml) {
@@ -157,91 +328,110 @@ public class GameServer {
         }
     }
 
+    // Busca la sala y registra la actividad del cliente
+    private static GameRoom findRoom(String roomId) {
+        GameRoom room = roomId == null ? null : rooms.get(roomId);
+        if (room != null) room.touch();
+        return room;
+    }
+
+    // 410 si la sala existió y fue retirada, 404 si nunca existió
+    private static Reply missingRoom(String roomId) {
+        if (roomReaper.isExpired(roomId)) {
+            return new Reply(410, "<response><status>ERROR</status><msg>Sala expirada</msg></response>");
+        }
+        return new Reply(404, "<response><status>ERROR</status><msg>Sala no existe</msg></response>");
+    }
+
     // -----------------------------------------------------------------
     // HANDLERS DEL SERVIDOR
     // -----------------------------------------------------------------
 
-    private static void createRoom(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
-
+    private static Reply createRoom(FormDecoder.Fields params) {
         String roomId = "ROOM_" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-        String playerName = params.getOrDefault("playerName", "Jugador");
-        int max = Integer.parseInt(params.getOrDefault("maxPlayers", "6"));
+        String playerName = params.playerName("Jugador");
+        int max = params.maxPlayers(6);
+        if (max < 1) {
+            return new Reply(400, "<response><status>ERROR</status><msg>maxPlayers inválido</msg></response>");
+        }
+        if (playerName.length() > MAX_NAME) return NAME_TOO_LONG;
 
         GameRoom room = new GameRoom(roomId, max);
         room.setHost(playerName);
-        room.addPlayer(playerName);
+        room.addListener(roomJournal);
+        room.addListener(roomEvents);
+        roomJournal.roomCreated(room);
+        // Una sala sin su creador no se publica
+        if (!room.addPlayer(playerName)) {
+            roomJournal.roomRemoved(roomId);
+            return new Reply(500, "<response><status>ERROR</status><msg>No se pudo crear la sala</msg></response>");
+        }
 
+        roomReaper.makeRoom();
         rooms.put(roomId, room);
 
-        respond(ex, 200,
+        return new Reply(200,
                 "<response><status>OK</status><roomId>" + roomId + "</roomId></response>");
     }
 
-    private static void joinRoom(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
-
-        String roomId = params.get("roomId");
-        String name = params.getOrDefault("playerName", "Jugador");
+    private static Reply joinRoom(FormDecoder.Fields params) {
+        String roomId = params.roomId();
+        String name = params.playerName("Jugador");
+        if (name.length() > MAX_NAME) return NAME_TOO_LONG;
 
-        GameRoom room = rooms.get(roomId);
+        GameRoom room = findRoom(roomId);
         if (room == null) {
-            respond(ex, 404, "<response><status>ERROR</status><msg>Sala no existe</msg></response>");
-            return;
+            return missingRoom(roomId);
         }
 
         if (room.isFull()) {
-            respond(ex, 400, "<response><status>ERROR</status><msg>Sala llena</msg></response>");
-            return;
+            return new Reply(400, "<response><status>ERROR</status><msg>Sala llena</msg></response>");
         }
 
         if (room.hasPlayer(name)) {
-            respond(ex, 400, "<response><status>ERROR</status><msg>Nombre en uso</msg></response>");
-            return;
+            return new Reply(400, "<response><status>ERROR</status><msg>Nombre en uso</msg></response>");
         }
 
-        room.addPlayer(name);
+        // Otro jugador pudo ocupar el último lugar o el nombre entre la comprobación y la unión
+        if (!room.addPlayer(name)) {
+            String msg = room.hasPlayer(name) ? "Nombre en uso" : "Sala llena";
+            return new Reply(400, "<response><status>ERROR</status><msg>" + msg + "</msg></response>");
+        }
 
-        respond(ex, 200, "<response><status>OK</status></response>");
+        return new Reply(200, "<response><status>OK</status></response>");
     }
 
-    private static void startGame(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
-
-        String roomId = params.get("roomId");
-        GameRoom room = rooms.get(roomId);
+    private static Reply startGame(FormDecoder.Fields params) {
+        String roomId = params.roomId();
+        GameRoom room = findRoom(roomId);
 
         if (room == null) {
-            respond(ex, 404, "<response><status>ERROR</status><msg>Sala no existe</msg></response>");
-            return;
+            return missingRoom(roomId);
         }
         if (room.getPlayers().size() < 2) {
-            respond(ex, 400, "<response><status>ERROR</status><msg>Min 2 jugadores</msg></response>");
-            return;
+            return new Reply(400, "<response><status>ERROR</status><msg>Min 2 jugadores</msg></response>");
         }
 
-        String playerName = params.getOrDefault("playerName", "Jugador");
+        String playerName = params.playerName("Jugador");
         if (!room.isHost(playerName)) {
-            respond(ex, 403, "<response><status>ERROR</status><msg>Solo el host puede iniciar</msg></response>");
-            return;
+            return new Reply(403, "<response><status>ERROR</status><msg>Solo el host puede iniciar</msg></response>");
         }
 
-        room.startGame(database.loadRounds());
+        if (!room.startGame(database.loadRounds())) {
+            return new Reply(409, "<response><status>ERROR</status><msg>Partida en curso</msg></response>");
+        }
 
-        respond(ex, 200, room.getRoundXML());
+        return Reply.of(room.getRoundSnapshot());
     }
 
-    private static void submitAnswer(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
-
-        String roomId = params.get("roomId");
-        String player = params.get("playerName");
-        String answer = params.getOrDefault("answer", "");
+    private static Reply submitAnswer(FormDecoder.Fields params) {
+        String roomId = params.roomId();
+        String player = params.playerName();
+        String answer = params.answer();
 
-        GameRoom room = rooms.get(roomId);
+        GameRoom room = findRoom(roomId);
         if (room == null) {
-            respond(ex, 404, "<response><status>ERROR</status><msg>Sala no existe</msg></response>");
-            return;
+            return missingRoom(roomId);
         }
 
         SubmitResult result = room.submitAnswer(player, answer, database);
@@ -252,44 +442,89 @@ public class GameServer {
                 "<correctWord>" + result.correctWord + "</correctWord>" +
                 "</response>";
 
-        respond(ex, 200, xml);
+        return new Reply(200, xml);
     }
 
-    private static void nextRound(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
-
-        String roomId = params.get("roomId");
-        GameRoom room = rooms.get(roomId);
+    private static Reply nextRound(FormDecoder.Fields params) {
+        String roomId = params.roomId();
+        GameRoom room = findRoom(roomId);
+        if (room == null) {
+            return missingRoom(roomId);
+        }
 
         if (room.nextRound()) {
-            respond(ex, 200, room.getRoundXML());
+            return Reply.of(room.getRoundSnapshot());
+        } else if (room.isGameOver()) {
+            return new Reply(200, room.getFinalResultsXML());
         } else {
-            respond(ex, 200, room.getFinalResultsXML());
+            // La ronda sigue en juego (u otro jugador ya avanzó): se devuelve la actual
+            return Reply.of(room.getRoundSnapshot());
         }
     }
 
-    private static void getStatus(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
-        String roomId = params.get("roomId");
+    private static Reply getStatus(FormDecoder.Fields params) {
+        String roomId = params.roomId();
 
-        GameRoom room = rooms.get(roomId);
+        GameRoom room = findRoom(roomId);
         if (room == null) {
-            respond(ex, 404, "<response><status>ERROR</status><msg>Sala no existe</msg></response>");
-            return;
+            return missingRoom(roomId);
+        }
+
+        // Sondeo barato: comparar versiones y reutilizar los bytes ya renderizados
+        GameRoom.Snapshot snapshot = room.getStatusSnapshot();
+        if (snapshot.version == params.sinceVersion()) {
+            return Reply.notModified(snapshot);
+        }
+        return Reply.of(snapshot);
+    }
+
+    private static Reply leaveRoom(FormDecoder.Fields params) {
+        String roomId = params.roomId();
+        String name = params.playerName();
+
+        GameRoom room = findRoom(roomId);
+        if (room != null) {
+            room.removePlayer(name);
+            // Sin jugadores la sala ya no sirve: se retira enseguida
+            if (room.getPlayers().isEmpty()) roomReaper.evict(room, "vacía");
         }
 
-        respond(ex, 200, room.getStatusXML());
+        return new Reply(200, "<response><status>OK</status></response>");
     }
 
-    private static void leaveRoom(HttpExchange ex) throws IOException {
-        Map<String, String> params = parseParams(readBody(ex));
+    private static Reply leaderboard(FormDecoder.Fields params) {
+        String roomId = params.roomId();
+        // un limit no numérico ya se rechazó con 400 al decodificar
+        int limit = Math.max(1, Math.min(100, params.limit(10)));
+
+        Leaderboard board = database.getLeaderboard();
+        List<Leaderboard.Standing> top = roomId == null ? board.top(limit) : board.topInRoom(roomId, limit);
+
+        StringBuilder sb = new StringBuilder("<response><status>OK</status><leaderboard scope=\"");
+        sb.append(roomId == null ? "global" : Xml.escape(roomId)).append("\">");
+        int rank = 1;
+        for (Leaderboard.Standing s : top) {
+            sb.append("<player name=\"").append(Xml.escape(s.player))
+                    .append("\" rank=\"").append(rank++).append("\">")
+                    .append(s.points).append("</player>");
+        }
+        sb.append("</leaderboard></response>");
 
-        String roomId = params.get("roomId");
-        String name = params.get("playerName");
+        return new Reply(200, sb.toString());
+    }
+
+    // Flujo de eventos de la sala; acepta roomId en la consulta (GET) o en el cuerpo
+    private static void events(HttpExchange ex) throws IOException {
+        FormDecoder.Fields params = requestParams(ex);
+        if (params == null) return;
+        String roomId = params.roomId();
 
-        GameRoom room = rooms.get(roomId);
-        if (room != null) room.removePlayer(name);
+        GameRoom room = findRoom(roomId);
+        if (room == null) {
+            respond(ex, missingRoom(roomId));
+            return;
+        }
 
-        respond(ex, 200, "<response><status>OK</status></response>");
+        roomEvents.subscribe(room, ex);
     }
-}
\ No newline at end of file
+}
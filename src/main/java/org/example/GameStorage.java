@@ -0,0 +1,34 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Almacenamiento del juego: catálogo de rondas y puntajes. GameServer
+ * elige la implementación al arrancar (ver Storage.open()).
+ */
+public interface GameStorage extends AutoCloseable {
+
+    /** Rondas del catálogo; la lista es inmutable y puede compartirse entre salas. */
+    List<Round> loadRounds();
+
+    /** Registra un puntaje; puede ser asíncrono. */
+    void saveScore(String player, int points, String room);
+
+    /** Clasificación en memoria, al día con todos los puntajes registrados. */
+    Leaderboard getLeaderboard();
+
+    /** Historial de puntajes con el formato clásico <scores><entry .../></scores>. */
+    void exportScoresXML(Writer out) throws IOException;
+
+    /** Puntajes aceptados pero aún no escritos. */
+    int getScoreBacklog();
+
+    /** Directorio donde viven los archivos de datos del servidor. */
+    File getDataDir();
+
+    @Override
+    void close();
+}
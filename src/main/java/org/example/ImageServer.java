@@ -0,0 +1,519 @@
+package org.example;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Servidor de imágenes de /data/imagenes.
+ *
+ * Cada imagen se resuelve una vez (recursos y luego disco, como antes) y
+ * se recuerda con su ETag fuerte (CRC32 + longitud del contenido), fecha y
+ * tipo MIME. Las que están en disco se envían por partes desde un
+ * FileChannel, sin cargarlas enteras en memoria (HttpExchange sólo da un
+ * OutputStream, así que cada parte pasa por un buffer del heap); las que
+ * vienen dentro del jar se guardan en una caché LRU en memoria limitada
+ * por bytes:
+ *
+ *   -Djuego.images.cacheBytes=33554432   tope de la caché (32 MB)
+ *   -Djuego.images.maxAge=86400          Cache-Control max-age en segundos
+ *
+ * Responde GET y HEAD, 304 con If-None-Match / If-Modified-Since y rangos
+ * simples (Range: bytes=a-b, a-, -n) con 206 o 416.
+ *
+ * Con ?w=N se sirve una versión reducida al ancho permitido más cercano
+ * (-Djuego.images.widths=100,200,400), recomprimida como JPEG o como PNG si
+ * la original tiene transparencia. Se genera la primera vez que se pide y
+ * queda en disco, con el ETag de la original en el nombre para que un
+ * cambio de la imagen produzca una variante nueva.
+ */
+public class ImageServer implements HttpHandler {
+
+    private static final Log LOG = Log.get(ImageServer.class);
+    private static final String ROOT = "data/imagenes/";
+    // Lo que ocupa en la caché una imagen que sólo guarda metadatos
+    private static final long METADATA_BYTES = 256;
+
+    private final long cacheBytes = Long.getLong("juego.images.cacheBytes", 32L * 1024 * 1024);
+    private final String cacheControl = "public, max-age=" + Long.getLong("juego.images.maxAge", 86400L);
+
+    // LRU por orden de acceso; protegido por su propio monitor
+    private final LinkedHashMap<String, Image> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    private final File variantDir;
+    private final int[] widths = parseWidths(System.getProperty("juego.images.widths", "100,200,400"));
+    private final float jpegQuality = Float.parseFloat(System.getProperty("juego.images.jpegQuality", "0.8"));
+    // Una sola generación por variante aunque lleguen varias peticiones juntas
+    private final Map<String, Object> variantLocks = new ConcurrentHashMap<>();
+    // Variantes (ancho + ETag de la original) para las que se sirve la original:
+    // ya era angosta o no se pudo decodificar. Evita leerla de nuevo en cada ?w=
+    private final Set<String> servesOriginal = ConcurrentHashMap.newKeySet();
+
+    public ImageServer(File variantDir) {
+        this.variantDir = variantDir;
+        if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+    }
+
+    private static int[] parseWidths(String spec) {
+        List<Integer> list = new ArrayList<>();
+        for (String w : spec.split(",")) {
+            if (!w.trim().isEmpty()) list.add(Integer.parseInt(w.trim()));
+        }
+        Collections.sort(list);
+        int[] out = new int[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.get(i);
+        return out;
+    }
+
+    static final class Image {
+        final String mime;
+        final long length;
+        final long lastModified;
+        final String etag;
+        final File file;      // en disco: se envía con transferTo
+        final byte[] bytes;   // dentro del jar: se guarda en memoria
+
+        Image(String mime, long length, long lastModified, String etag, File file, byte[] bytes) {
+            this.mime = mime;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.file = file;
+            this.bytes = bytes;
+        }
+
+        // Un archivo modificado en disco invalida la entrada
+        boolean isFresh() {
+            return file == null || (file.lastModified() == lastModified && file.length() == length);
+        }
+
+        long cost() {
+            return bytes != null ? bytes.length + METADATA_BYTES : METADATA_BYTES;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // RESOLUCIÓN Y CACHÉ
+    // ---------------------------------------------------------
+
+    Image lookup(String path) throws IOException {
+        Image img;
+        synchronized (cache) {
+            img = cache.get(path);
+        }
+        if (img != null && img.isFresh()) return img;
+
+        img = load(path);
+        if (img != null) put(path, img);
+        return img;
+    }
+
+    private void put(String path, Image img) {
+        synchronized (cache) {
+            Image old = cache.put(path, img);
+            if (old != null) cachedBytes -= old.cost();
+            cachedBytes += img.cost();
+
+            for (Iterator<Image> it = cache.values().iterator(); cachedBytes > cacheBytes && it.hasNext(); ) {
+                Image eldest = it.next();
+                if (eldest == img) continue;
+                cachedBytes -= eldest.cost();
+                it.remove();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // VARIANTES REDUCIDAS
+    // ---------------------------------------------------------
+
+    // El menor ancho permitido que cubre lo pedido (o el mayor de todos)
+    int variantWidth(int requested) {
+        if (widths.length == 0) return 0;
+        for (int w : widths) {
+            if (w >= requested) return w;
+        }
+        return widths[widths.length - 1];
+    }
+
+    /**
+     * Variante de {@code width} px de ancho. Si la original ya es igual o más
+     * angosta, o no se puede decodificar, se devuelve la original.
+     */
+    Image lookupVariant(String path, int width) throws IOException {
+        Image original = lookup(path);
+        if (original == null) return null;
+
+        String base = new File(path).getName();
+        int dot = base.lastIndexOf('.');
+        String stem = dot > 0 ? base.substring(0, dot) : base;
+        String tag = original.etag.replace("\"", "");
+        File dir = new File(variantDir, Integer.toString(width));
+        String key = dir.getPath() + "/" + stem + "-" + tag;
+        if (servesOriginal.contains(key)) return original;
+
+        // Puede existir como .jpg o como .png según tuviera transparencia
+        for (String ext : new String[]{".jpg", ".png"}) {
+            File f = new File(dir, stem + "-" + tag + ext);
+            Image img = cachedFile(f);
+            if (img != null) return img;
+        }
+
+        Object lock = variantLocks.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                for (String ext : new String[]{".jpg", ".png"}) {
+                    File f = new File(dir, stem + "-" + tag + ext);
+                    if (f.isFile()) return cachedFile(f);
+                }
+                if (servesOriginal.contains(key)) return original;
+                File out = generate(original, width, dir, stem + "-" + tag);
+                if (out != null) return cachedFile(out);
+                servesOriginal.add(key);
+                return original;
+            }
+        } finally {
+            variantLocks.remove(key);
+        }
+    }
+
+    // Las variantes no cambian: basta con que el archivo exista
+    private Image cachedFile(File f) throws IOException {
+        String key = f.getPath();
+        Image img;
+        synchronized (cache) {
+            img = cache.get(key);
+        }
+        if (img != null) return img;
+        if (!f.isFile()) return null;
+        img = fromFile(f, f.getName());
+        put(key, img);
+        return img;
+    }
+
+    private File generate(Image original, int width, File dir, String name) throws IOException {
+        BufferedImage src;
+        try (InputStream in = original.bytes != null
+                ? new ByteArrayInputStream(original.bytes)
+                : new FileInputStream(original.file)) {
+            src = ImageIO.read(in);
+        }
+        if (src == null || src.getWidth() <= width) return null;
+
+        boolean alpha = src.getColorModel().hasAlpha();
+        BufferedImage scaled = scale(src, width, alpha);
+
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("No se pudo crear " + dir);
+        File out = new File(dir, name + (alpha ? ".png" : ".jpg"));
+        File tmp = new File(dir, out.getName() + ".tmp");
+        if (alpha) {
+            ImageIO.write(scaled, "png", tmp);
+        } else {
+            writeJpeg(scaled, tmp);
+        }
+        if (!tmp.renameTo(out)) {
+            tmp.delete();
+            throw new IOException("No se pudo guardar " + out);
+        }
+        LOG.info("🖼️ Variante {}px: {} ({} bytes)", width, out.getName(), original.length + " -> " + out.length());
+        return out;
+    }
+
+    // Reduce a la mitad mientras se pueda y termina con un paso bilineal:
+    // mucho mejor resultado que un único paso grande
+    private static BufferedImage scale(BufferedImage src, int width, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage img = src;
+        int w = src.getWidth();
+        do {
+            w = Math.max(width, w / 2);
+            int nh = Math.max(1, (int) Math.round((double) src.getHeight() * w / src.getWidth()));
+            BufferedImage next = new BufferedImage(w, nh, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(img, 0, 0, w, nh, null);
+            g.dispose();
+            img = next;
+        } while (w > width);
+        return img;
+    }
+
+    private void writeJpeg(BufferedImage img, File file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Primero los recursos (en disco o dentro del jar) y después el directorio de trabajo
+    private Image load(String path) throws IOException {
+        URL url = ImageServer.class.getClassLoader().getResource(path);
+        if (url != null && "file".equals(url.getProtocol())) {
+            try {
+                return fromFile(new File(url.toURI()), path);
+            } catch (URISyntaxException ignored) {}
+        }
+        if (url != null) {
+            URLConnection conn = url.openConnection();
+            try (InputStream in = conn.getInputStream()) {
+                byte[] bytes = readAll(in);
+                long modified = conn.getLastModified() > 0 ? conn.getLastModified() : System.currentTimeMillis();
+                return new Image(mimeType(path), bytes.length, modified, etag(crc(bytes), bytes.length), null, bytes);
+            }
+        }
+
+        File file = new File(path);
+        return file.isFile() ? fromFile(file, path) : null;
+    }
+
+    private static Image fromFile(File file, String path) throws IOException {
+        long modified = file.lastModified();
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            int n;
+            while ((n = ch.read(buf)) > 0) {
+                crc.update(buf.array(), 0, n);
+                length += n;
+                buf.clear();
+            }
+        }
+        return new Image(mimeType(path), length, modified, etag(crc.getValue(), length), file, null);
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    private static String etag(long crc, long length) {
+        return "\"" + Long.toHexString(crc) + "-" + Long.toHexString(length) + "\"";
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[16384];
+        int n;
+        while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+
+    static String mimeType(String path) {
+        String p = path.toLowerCase();
+        if (p.endsWith(".jpg") || p.endsWith(".jpeg")) return "image/jpeg";
+        if (p.endsWith(".gif")) return "image/gif";
+        if (p.endsWith(".webp")) return "image/webp";
+        return "image/png";
+    }
+
+    // Sólo rutas dentro de data/imagenes, sin subir de directorio
+    private static boolean isSafe(String path) {
+        return path.startsWith(ROOT) && !path.contains("..") && !path.contains("\\");
+    }
+
+    // ---------------------------------------------------------
+    // HTTP
+    // ---------------------------------------------------------
+
+    @Override
+    public void handle(HttpExchange ex) throws IOException {
+        try {
+            String method = ex.getRequestMethod();
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                ex.getResponseHeaders().set("Allow", "GET, HEAD");
+                sendText(ex, 405, "405 - Método no permitido");
+                return;
+            }
+
+            // /data/imagenes/perro1.png -> data/imagenes/perro1.png
+            String path = ex.getRequestURI().getPath().substring(1);
+            int width = requestedWidth(ex.getRequestURI().getRawQuery());
+            Image img = !isSafe(path) ? null : width > 0 ? lookupVariant(path, variantWidth(width)) : lookup(path);
+            if (img == null) {
+                sendText(ex, 404, "404 - Imagen no encontrada: " + path);
+                return;
+            }
+
+            Headers h = ex.getResponseHeaders();
+            h.set("Content-Type", img.mime);
+            h.set("ETag", img.etag);
+            h.set("Last-Modified", httpDate(img.lastModified));
+            h.set("Cache-Control", cacheControl);
+            h.set("Accept-Ranges", "bytes");
+            h.set("Access-Control-Allow-Origin", "*");
+
+            Headers req = ex.getRequestHeaders();
+            if (notModified(req, img)) {
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            long start = 0;
+            long end = img.length - 1;
+            int status = 200;
+            String range = req.getFirst("Range");
+            String ifRange = req.getFirst("If-Range");
+            if (range != null && img.length > 0 && (ifRange == null || ifRange.equals(img.etag))) {
+                long[] r = parseRange(range, img.length);
+                if (r != null && r.length == 0) {
+                    h.set("Content-Range", "bytes */" + img.length);
+                    ex.sendResponseHeaders(416, -1);
+                    return;
+                }
+                if (r != null) {
+                    start = r[0];
+                    end = r[1];
+                    status = 206;
+                    h.set("Content-Range", "bytes " + start + "-" + end + "/" + img.length);
+                }
+            }
+
+            long count = end - start + 1;
+            if (head) {
+                h.set("Content-Length", Long.toString(count));
+                ex.sendResponseHeaders(status, -1);
+                return;
+            }
+            ex.sendResponseHeaders(status, count);
+            send(ex.getResponseBody(), img, start, count);
+
+        } catch (Exception e) {
+            LOG.warn("Error al servir imagen {}: {}", ex.getRequestURI().getPath(), e.getMessage());
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static void send(OutputStream out, Image img, long start, long count) throws IOException {
+        if (img.bytes != null) {
+            out.write(img.bytes, (int) start, (int) count);
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(img.file.toPath(), StandardOpenOption.READ)) {
+            // No es copia directa al socket: el canal envuelve el OutputStream y copia
+            // cada parte a un buffer del heap antes de escribirla
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long n = ch.transferTo(pos, remaining, target);
+                if (n <= 0) break; // el archivo se acortó: se corta la conexión
+                pos += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    // Valor de ?w= o 0 si no viene o no es un número positivo
+    private static int requestedWidth(String query) {
+        if (query == null) return 0;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("w=")) {
+                try {
+                    return Math.max(0, Integer.parseInt(pair.substring(2)));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // If-None-Match manda sobre If-Modified-Since (RFC 7232)
+    private static boolean notModified(Headers req, Image img) {
+        String inm = req.getFirst("If-None-Match");
+        if (inm != null) {
+            for (String tag : inm.split(",")) {
+                String t = tag.trim();
+                if (t.equals("*") || t.equals(img.etag) || t.equals("W/" + img.etag)) return true;
+            }
+            return false;
+        }
+        String ims = req.getFirst("If-Modified-Since");
+        if (ims != null) {
+            try {
+                long since = ZonedDateTime.parse(ims, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return img.lastModified / 1000 <= since / 1000;
+            } catch (DateTimeParseException ignored) {}
+        }
+        return false;
+    }
+
+    /**
+     * Rango simple "bytes=a-b", "bytes=a-" o "bytes=-n". Devuelve null si la
+     * cabecera no se entiende o pide varios rangos (se envía todo) y un
+     * arreglo vacío si el rango no se puede satisfacer (416).
+     */
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return null;
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String a = spec.substring(0, dash).trim();
+            String b = spec.substring(dash + 1).trim();
+            if (a.isEmpty()) {
+                long suffix = Long.parseLong(b);
+                if (suffix <= 0) return new long[0];
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(a);
+            long end = b.isEmpty() ? length - 1 : Math.min(Long.parseLong(b), length - 1);
+            if (start >= length) return new long[0];
+            if (end < start) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    private static void sendText(HttpExchange ex, int code, String text) throws IOException {
+        byte[] out = text.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        ex.sendResponseHeaders(code, out.length);
+        ex.getResponseBody().write(out);
+    }
+}
@@ -0,0 +1,108 @@
+package org.example;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clasificación incremental: totales por jugador, global y por sala.
+ * Cada puntaje actualiza el ranking en O(log n) y consultar el top-K
+ * sólo recorre K elementos, sin importar el tamaño del historial.
+ *
+ * Las salas son por partida: la clasificación de una sala que lleva más de
+ * -Djuego.scores.roomRetentionHours (24, igual que el historial) sin
+ * puntajes se descarta en pruneRooms(); la global no se poda.
+ */
+public class Leaderboard {
+
+    public static final class Standing {
+        public final String player;
+        public final long points;
+
+        Standing(String player, long points) {
+            this.player = player;
+            this.points = points;
+        }
+    }
+
+    // Mayor puntaje primero; a igualdad, orden alfabético
+    private static final Comparator<Standing> ORDER = (a, b) -> {
+        int c = Long.compare(b.points, a.points);
+        return c != 0 ? c : a.player.compareTo(b.player);
+    };
+
+    private final long roomRetentionMillis =
+            TimeUnit.HOURS.toMillis(Long.getLong("juego.scores.roomRetentionHours", 24L));
+
+    private final Board global = new Board();
+    private final Map<String, Board> byRoom = new ConcurrentHashMap<>();
+
+    public void record(String player, String room, long points) {
+        addGlobal(player, points);
+        addInRoom(room, player, points);
+    }
+
+    /** Sólo la clasificación global (al reconstruir desde totales por jugador). */
+    public void addGlobal(String player, long points) {
+        global.add(player, points);
+    }
+
+    /** Sólo la clasificación de la sala. */
+    public void addInRoom(String room, String player, long points) {
+        byRoom.computeIfAbsent(room, r -> new Board()).add(player, points);
+    }
+
+    public List<Standing> top(int k) {
+        return global.top(k);
+    }
+
+    public List<Standing> topInRoom(String room, int k) {
+        Board b = byRoom.get(room);
+        return b == null ? Collections.<Standing>emptyList() : b.top(k);
+    }
+
+    public int playerCount() { return global.totals.size(); }
+
+    public int roomCount() { return byRoom.size(); }
+
+    /** Descarta las salas sin puntajes nuevos en el período de retención; devuelve cuántas. */
+    public int pruneRooms(long now) {
+        long cutoff = now - roomRetentionMillis;
+        int before = byRoom.size();
+        byRoom.values().removeIf(b -> b.lastUpdate < cutoff);
+        return before - byRoom.size();
+    }
+
+    // ---------------------------------------------------------
+    // RANKING DE UN ÁMBITO
+    // ---------------------------------------------------------
+
+    private static final class Board {
+        private final Map<String, Long> totals = new ConcurrentHashMap<>();
+        private final NavigableSet<Standing> ranking = new ConcurrentSkipListSet<>(ORDER);
+        private volatile long lastUpdate = System.currentTimeMillis();
+
+        // Las escrituras se serializan por ranking; las lecturas no bloquean
+        synchronized void add(String player, long points) {
+            Long old = totals.get(player);
+            long total = points;
+            if (old != null) {
+                ranking.remove(new Standing(player, old));
+                total += old;
+            }
+            totals.put(player, total);
+            ranking.add(new Standing(player, total));
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        List<Standing> top(int k) {
+            List<Standing> out = new ArrayList<>(Math.min(k, 16));
+            for (Standing s : ranking) {
+                if (out.size() >= k) break;
+                out.add(s);
+            }
+            return out;
+        }
+    }
+}
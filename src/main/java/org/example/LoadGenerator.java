@@ -0,0 +1,483 @@
+package org.example;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga sin interfaz: simula salas completas contra un
+ * GameServer ya arrancado, para dimensionar hardware.
+ *
+ * Uso:
+ *   java -cp target/classes -Djuego.load.rooms=1000 org.example.LoadGenerator
+ *
+ *   -Djuego.load.url=http://localhost:5555
+ *   -Djuego.load.rooms=100          salas simultáneas
+ *   -Djuego.load.players=4          bots por sala (el primero es el host)
+ *   -Djuego.load.seconds=60         duración de la prueba
+ *   -Djuego.load.rampSeconds=10     las salas se crean repartidas en ese lapso
+ *   -Djuego.load.accuracy=0.7       probabilidad de acertar cada intento
+ *   -Djuego.load.thinkMillis=3000   tiempo medio antes de cada intento
+ *   -Djuego.load.pollMillis=1000    sondeo de /get_status de cada bot
+ *   -Djuego.load.threads=64         hilos que hacen las peticiones
+ *
+ * Cada sala crea, une, inicia y juega: los bots sondean el estado, intentan
+ * adivinar tras pensar un rato (si fallan vuelven a intentar) y el host
+ * pasa de ronda y reinicia la partida al terminar. Al final se listan
+ * peticiones por segundo y latencias p50/p99/p999 por ruta, y el consumo
+ * del servidor según su /metrics.
+ *
+ * Con muchas salas conviene arrancar el servidor con los límites por
+ * cliente desactivados (-Djuego.ratelimit.submit=0 -Djuego.ratelimit.status=0),
+ * porque todos los bots salen de la misma IP.
+ */
+public class LoadGenerator {
+
+    private final String baseUrl = System.getProperty("juego.load.url", "http://localhost:5555");
+    private final int roomCount = Integer.getInteger("juego.load.rooms", 100);
+    private final int playersPerRoom = Math.max(2, Integer.getInteger("juego.load.players", 4));
+    private final long durationMillis = TimeUnit.SECONDS.toMillis(Long.getLong("juego.load.seconds", 60L));
+    private final long rampMillis = TimeUnit.SECONDS.toMillis(Long.getLong("juego.load.rampSeconds", 10L));
+    private final double accuracy = Double.parseDouble(System.getProperty("juego.load.accuracy", "0.7"));
+    private final long thinkMillis = Long.getLong("juego.load.thinkMillis", 3000L);
+    private final long pollMillis = Long.getLong("juego.load.pollMillis", 1000L);
+    private final int threads = Integer.getInteger("juego.load.threads", 64);
+
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    public LoadGenerator() {
+        // Conexiones persistentes: una por hilo como mínimo
+        System.setProperty("http.maxConnections", Integer.toString(threads));
+        scheduler = Executors.newScheduledThreadPool(threads, ServerExecutors.named("bot"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println("Carga: " + roomCount + " salas x " + playersPerRoom + " bots contra " + baseUrl
+                + " durante " + durationMillis / 1000 + " s");
+
+        Map<String, Double> before = scrapeMetrics();
+        ServerSampler sampler = new ServerSampler();
+        sampler.start();
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < roomCount; i++) {
+            RoomDriver room = new RoomDriver(i);
+            scheduler.schedule(room::open, rampMillis * i / Math.max(1, roomCount), TimeUnit.MILLISECONDS);
+        }
+
+        long lastCount = 0;
+        long lastTime = start;
+        while (System.currentTimeMillis() - start < durationMillis) {
+            Thread.sleep(Math.min(10_000L, Math.max(1, durationMillis - (System.currentTimeMillis() - start))));
+            long now = System.currentTimeMillis();
+            long count = totalRequests();
+            System.out.println(String.format("  %3d s  %8.0f req/s  %d errores",
+                    (now - start) / 1000, (count - lastCount) * 1000.0 / Math.max(1, now - lastTime), totalErrors()));
+            lastCount = count;
+            lastTime = now;
+        }
+
+        running = false;
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+        sampler.stop();
+
+        report(elapsed, before, scrapeMetrics(), sampler);
+    }
+
+    // ---------------------------------------------------------
+    // BOTS
+    // ---------------------------------------------------------
+
+    private final class Bot {
+        final String name;
+        volatile String version;     // última versión vista, para sinceVersion
+        volatile int round;          // ronda que está jugando
+        volatile String word;
+        volatile boolean roundOpen;  // el último estado traía ronda en juego
+        volatile boolean started;
+
+        Bot(String name) {
+            this.name = name;
+        }
+    }
+
+    private final class RoomDriver {
+        final int index;
+        final Bot[] bots = new Bot[playersPerRoom];
+        volatile String roomId;
+
+        RoomDriver(int index) {
+            this.index = index;
+            for (int i = 0; i < bots.length; i++) bots[i] = new Bot("bot" + index + "_" + i);
+        }
+
+        Bot host() { return bots[0]; }
+
+        // Crea la sala, une a los bots e inicia la partida; si algo falla lo reintenta
+        void open() {
+            if (!running) return;
+            try {
+                Response r = call("/create_room", "playerName", host().name, "maxPlayers", Integer.toString(bots.length));
+                roomId = r.ok() ? tag(r.body, "roomId") : null;
+                if (roomId == null) throw new IOException("create_room: " + r.code);
+
+                for (int i = 1; i < bots.length; i++) {
+                    r = call("/join_room", "roomId", roomId, "playerName", bots[i].name);
+                    if (!r.ok()) throw new IOException("join_room: " + r.code);
+                }
+                startGame();
+
+                for (Bot bot : bots) {
+                    long offset = ThreadLocalRandom.current().nextLong(pollMillis);
+                    scheduler.scheduleAtFixedRate(() -> poll(bot), offset, pollMillis, TimeUnit.MILLISECONDS);
+                }
+            } catch (IOException e) {
+                retry(this::open);
+            }
+        }
+
+        void startGame() throws IOException {
+            Response r = call("/start_game", "roomId", roomId, "playerName", host().name);
+            if (!r.ok()) throw new IOException("start_game: " + r.code);
+        }
+
+        void poll(Bot bot) {
+            if (!running) return;
+            try {
+                Response r = bot.version == null
+                        ? call("/get_status", "roomId", roomId, "playerName", bot.name)
+                        : call("/get_status", "roomId", roomId, "playerName", bot.name, "sinceVersion", bot.version);
+                if (r.code == 200) {
+                    bot.version = tag(r.body, "version");
+                    bot.started = "true".equals(tag(r.body, "started"));
+                    String round = tag(r.body, "round");
+                    boolean wasOpen = bot.roundOpen;
+                    bot.roundOpen = round != null;
+                    // ronda nueva: cambió el número o se reabrió (partida reiniciada)
+                    if (round != null && (!wasOpen || Integer.parseInt(round) != bot.round)) {
+                        bot.round = Integer.parseInt(round);
+                        bot.word = tag(r.body, "word");
+                        scheduleGuess(bot, bot.round);
+                    }
+                } else if (r.code != 304) {
+                    return;
+                }
+
+                // Ronda terminada (o partida terminada): el host avanza
+                if (bot == host() && bot.started && !bot.roundOpen) advance();
+            } catch (IOException ignored) {
+                // ya contado en las estadísticas; el próximo sondeo reintenta
+            }
+        }
+
+        void advance() throws IOException {
+            Response r = call("/next_round", "roomId", roomId, "playerName", host().name);
+            if (r.ok() && "GAME_OVER".equals(tag(r.body, "status"))) startGame();
+        }
+
+        void scheduleGuess(Bot bot, int round) {
+            long think = thinkMillis / 2 + ThreadLocalRandom.current().nextLong(Math.max(1, thinkMillis));
+            scheduler.schedule(() -> guess(bot, round), think, TimeUnit.MILLISECONDS);
+        }
+
+        void guess(Bot bot, int round) {
+            if (!running || bot.round != round || !bot.roundOpen) return;
+            boolean right = ThreadLocalRandom.current().nextDouble() < accuracy;
+            String answer = right ? bot.word : "NO" + bot.word;
+            try {
+                Response r = call("/submit_answer", "roomId", roomId, "playerName", bot.name, "answer", answer);
+                if (r.ok() && "INCORRECT".equals(tag(r.body, "status"))) scheduleGuess(bot, round);
+            } catch (IOException ignored) {
+                scheduleGuess(bot, round);
+            }
+        }
+    }
+
+    private void retry(Runnable task) {
+        if (!running) return;
+        try {
+            scheduler.schedule(task, 1, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // se está apagando
+        }
+    }
+
+    // ---------------------------------------------------------
+    // HTTP
+    // ---------------------------------------------------------
+
+    private static final class Response {
+        final int code;
+        final String body;
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        boolean ok() { return code == 200; }
+    }
+
+    private Response call(String path, String... params) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            if (form.length() > 0) form.append('&');
+            form.append(URLEncoder.encode(params[i], "UTF-8")).append('=')
+                    .append(URLEncoder.encode(params[i + 1], "UTF-8"));
+        }
+        byte[] body = form.toString().getBytes(StandardCharsets.UTF_8);
+
+        Stats s = stats.computeIfAbsent(path, Stats::new);
+        long start = System.nanoTime();
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(30_000);
+            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body);
+            }
+
+            int code = conn.getResponseCode();
+            InputStream in = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            String text = in == null ? "" : readAll(in);
+            s.record(code, System.nanoTime() - start);
+            return new Response(code, text);
+        } catch (IOException e) {
+            s.record(-1, System.nanoTime() - start);
+            if (conn != null) conn.disconnect();
+            throw e;
+        }
+    }
+
+    // Leer hasta el final deja la conexión lista para reutilizarse
+    private static String readAll(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = is.read(chunk)) != -1) buf.write(chunk, 0, n);
+            return new String(buf.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String tag(String xml, String name) {
+        int start = xml.indexOf("<" + name + ">");
+        if (start < 0) return null;
+        start += name.length() + 2;
+        int end = xml.indexOf("</" + name + ">", start);
+        return end < 0 ? null : xml.substring(start, end);
+    }
+
+    // ---------------------------------------------------------
+    // ESTADÍSTICAS
+    // ---------------------------------------------------------
+
+    /**
+     * Latencias de una ruta en un histograma log-lineal de microsegundos:
+     * 32 casillas por potencia de dos, es decir, unos 3% de error relativo
+     * en los percentiles sin guardar cada muestra.
+     */
+    private static final class Stats {
+        private static final int SUB = 32;
+
+        final String path;
+        final AtomicLongArray buckets = new AtomicLongArray(2 * SUB + 40 * SUB);
+        final LongAdder count = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+        final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+
+        Stats(String path) {
+            this.path = path;
+        }
+
+        void record(int code, long nanos) {
+            long micros = nanos / 1000;
+            buckets.incrementAndGet(Math.min(index(micros), buckets.length() - 1));
+            count.increment();
+            long m;
+            while (micros > (m = max.get()) && !max.compareAndSet(m, micros)) { }
+            if (code != 200 && code != 304) errors.computeIfAbsent(code, k -> new LongAdder()).increment();
+        }
+
+        static int index(long micros) {
+            if (micros < 2 * SUB) return (int) micros;
+            int shift = 63 - Long.numberOfLeadingZeros(micros) - 5; // deja micros >> shift en [32, 63]
+            return 2 * SUB + (shift - 1) * SUB + (int) ((micros >> shift) - SUB);
+        }
+
+        // Límite superior, en microsegundos, de los valores de una casilla
+        static long upperBound(int index) {
+            if (index < 2 * SUB) return index;
+            int shift = (index - 2 * SUB) / SUB + 1;
+            long mantissa = (index - 2 * SUB) % SUB + SUB;
+            return ((mantissa + 1) << shift) - 1;
+        }
+
+        long percentile(double p) {
+            long total = count.sum();
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        long errorCount() {
+            long n = 0;
+            for (LongAdder a : errors.values()) n += a.sum();
+            return n;
+        }
+    }
+
+    private long totalRequests() {
+        long n = 0;
+        for (Stats s : stats.values()) n += s.count.sum();
+        return n;
+    }
+
+    private long totalErrors() {
+        long n = 0;
+        for (Stats s : stats.values()) n += s.errorCount();
+        return n;
+    }
+
+    // ---------------------------------------------------------
+    // SERVIDOR (/metrics)
+    // ---------------------------------------------------------
+
+    // Nombre de la serie (con etiquetas) -> valor
+    private Map<String, Double> scrapeMetrics() {
+        Map<String, Double> values = new HashMap<>();
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + "/metrics").openConnection();
+            conn.setConnectTimeout(5000);
+            conn.setReadTimeout(10_000);
+            for (String line : readAll(conn.getInputStream()).split("\n")) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int space = line.lastIndexOf(' ');
+                try {
+                    values.put(line.substring(0, space), Double.parseDouble(line.substring(space + 1)));
+                } catch (NumberFormatException | StringIndexOutOfBoundsException ignored) {}
+            }
+        } catch (IOException e) {
+            // sin /metrics el informe sólo trae el lado del cliente
+        }
+        return values;
+    }
+
+    /** Guarda los máximos de los indicadores del servidor durante la prueba. */
+    private final class ServerSampler implements Runnable {
+        final Map<String, Double> peaks = new TreeMap<>();
+        private final Thread thread = new Thread(this, "metrics-sampler");
+
+        void start() {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Map<String, Double> now = scrapeMetrics();
+                synchronized (peaks) {
+                    for (Map.Entry<String, Double> e : now.entrySet()) {
+                        if (isSampledGauge(e.getKey())) peaks.merge(e.getKey(), e.getValue(), Math::max);
+                    }
+                }
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private boolean isSampledGauge(String name) {
+            return name.startsWith("juego_rooms") || name.startsWith("juego_players")
+                    || name.startsWith("juego_executor_") || name.startsWith("juego_score_backlog")
+                    || name.startsWith("juego_timer_lag") || name.startsWith("juego_jvm_threads")
+                    || name.startsWith("juego_jvm_heap_used") || name.startsWith("juego_sse_")
+                    || name.startsWith("juego_log_dropped");
+        }
+    }
+
+    // ---------------------------------------------------------
+    // INFORME
+    // ---------------------------------------------------------
+
+    private void report(long elapsedMillis, Map<String, Double> before, Map<String, Double> after, ServerSampler sampler) {
+        double seconds = elapsedMillis / 1000.0;
+        System.out.println();
+        System.out.println(String.format("%-16s %10s %9s %9s %9s %9s %9s  %s",
+                "Ruta", "peticiones", "req/s", "p50 ms", "p99 ms", "p999 ms", "máx ms", "errores"));
+
+        List<Stats> sorted = new ArrayList<>(stats.values());
+        sorted.sort(Comparator.comparing(s -> s.path));
+        long total = 0;
+        for (Stats s : sorted) {
+            long n = s.count.sum();
+            total += n;
+            StringBuilder errs = new StringBuilder();
+            for (Map.Entry<Integer, LongAdder> e : new TreeMap<>(s.errors).entrySet()) {
+                errs.append(e.getKey() < 0 ? "E/S" : e.getKey().toString()).append('x').append(e.getValue().sum()).append(' ');
+            }
+            System.out.println(String.format("%-16s %10d %9.1f %9.2f %9.2f %9.2f %9.2f  %s",
+                    s.path, n, n / seconds, s.percentile(0.50) / 1000.0, s.percentile(0.99) / 1000.0,
+                    s.percentile(0.999) / 1000.0, s.max.get() / 1000.0, errs.toString().trim()));
+        }
+        System.out.println(String.format("%-16s %10d %9.1f", "total", total, total / seconds));
+
+        if (after.isEmpty()) {
+            System.out.println("\n(sin /metrics del servidor)");
+            return;
+        }
+        System.out.println("\nServidor:");
+        Double cpuBefore = before.get("juego_process_cpu_seconds_total");
+        Double cpuAfter = after.get("juego_process_cpu_seconds_total");
+        if (cpuBefore != null && cpuAfter != null) {
+            System.out.println(String.format("  CPU                 %.1f s (%.0f%% de un núcleo)",
+                    cpuAfter - cpuBefore, (cpuAfter - cpuBefore) * 100 / seconds));
+        }
+        Double gcBefore = before.get("juego_jvm_gc_seconds_total");
+        Double gcAfter = after.get("juego_jvm_gc_seconds_total");
+        if (gcBefore != null && gcAfter != null) {
+            System.out.println(String.format("  GC                  %.2f s", gcAfter - gcBefore));
+        }
+        synchronized (sampler.peaks) {
+            for (Map.Entry<String, Double> e : sampler.peaks.entrySet()) {
+                System.out.println(String.format("  %-40s máx %s", e.getKey(), format(e.getValue())));
+            }
+        }
+    }
+
+    private static String format(double v) {
+        return v == Math.rint(v) ? Long.toString((long) v) : String.format("%.3f", v);
+    }
+}
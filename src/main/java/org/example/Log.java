@@ -0,0 +1,294 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registro del servidor con niveles y escritura asíncrona.
+ *
+ *   -Djuego.log.level=INFO          DEBUG, INFO, WARN o ERROR
+ *   -Djuego.log.level.<nombre>=...  nivel de un registro concreto (GameRoom...)
+ *   -Djuego.log.format=text         text o json (una línea por evento)
+ *   -Djuego.log.buffer=8192         eventos en vuelo (potencia de dos)
+ *
+ * Los eventos van a un anillo de casillas preasignadas y un hilo aparte los
+ * formatea y escribe (INFO y DEBUG a stdout, WARN y ERROR a stderr), así
+ * que el hilo que registra nunca toca la consola. Si el anillo se llena el
+ * evento se descarta y se cuenta en vez de bloquear. El mensaje usa {} como
+ * marcador y se formatea en el hilo escritor; con el nivel deshabilitado la
+ * llamada no asigna nada (ojo: pasar un int sí lo encajona, para eso están
+ * isDebugEnabled()/isInfoEnabled()).
+ */
+public final class Log {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private final String name;
+    private final int threshold;
+
+    private Log(String name, Level level) {
+        this.name = name;
+        this.threshold = level.ordinal();
+    }
+
+    public static Log get(String name) {
+        String configured = System.getProperty("juego.log.level." + name, System.getProperty("juego.log.level", "INFO"));
+        return new Log(name, Level.valueOf(configured.toUpperCase()));
+    }
+
+    public static Log get(Class<?> type) {
+        return get(type.getSimpleName());
+    }
+
+    public boolean isDebugEnabled() { return threshold <= Level.DEBUG.ordinal(); }
+    public boolean isInfoEnabled() { return threshold <= Level.INFO.ordinal(); }
+
+    public void debug(String msg) { if (threshold <= 0) APPENDER.publish(Level.DEBUG, name, msg, null, null, null, null); }
+    public void debug(String msg, Object a) { if (threshold <= 0) APPENDER.publish(Level.DEBUG, name, msg, a, null, null, null); }
+    public void debug(String msg, Object a, Object b) { if (threshold <= 0) APPENDER.publish(Level.DEBUG, name, msg, a, b, null, null); }
+    public void debug(String msg, Object a, Object b, Object c) { if (threshold <= 0) APPENDER.publish(Level.DEBUG, name, msg, a, b, c, null); }
+
+    public void info(String msg) { if (threshold <= 1) APPENDER.publish(Level.INFO, name, msg, null, null, null, null); }
+    public void info(String msg, Object a) { if (threshold <= 1) APPENDER.publish(Level.INFO, name, msg, a, null, null, null); }
+    public void info(String msg, Object a, Object b) { if (threshold <= 1) APPENDER.publish(Level.INFO, name, msg, a, b, null, null); }
+    public void info(String msg, Object a, Object b, Object c) { if (threshold <= 1) APPENDER.publish(Level.INFO, name, msg, a, b, c, null); }
+
+    public void warn(String msg) { if (threshold <= 2) APPENDER.publish(Level.WARN, name, msg, null, null, null, null); }
+    public void warn(String msg, Object a) { if (threshold <= 2) APPENDER.publish(Level.WARN, name, msg, a, null, null, null); }
+    public void warn(String msg, Object a, Object b) { if (threshold <= 2) APPENDER.publish(Level.WARN, name, msg, a, b, null, null); }
+    public void warn(String msg, Object a, Object b, Object c) { if (threshold <= 2) APPENDER.publish(Level.WARN, name, msg, a, b, c, null); }
+
+    public void error(String msg, Throwable t) { APPENDER.publish(Level.ERROR, name, msg, null, null, null, t); }
+    public void error(String msg, Object a, Throwable t) { APPENDER.publish(Level.ERROR, name, msg, a, null, null, t); }
+
+    /** Eventos descartados por anillo lleno desde el arranque. */
+    public static long droppedCount() { return APPENDER.dropped.sum(); }
+
+    /** Espera a que se escriba lo registrado hasta ahora (apagado, pruebas). */
+    public static void flush() { APPENDER.drain(); }
+
+    // ---------------------------------------------------------
+    // MUESTREO
+    // ---------------------------------------------------------
+
+    /**
+     * Deja pasar uno de cada {@code every} eventos de un punto del código:
+     * {@code if (SAMPLER.sample()) log.info(...)}.
+     */
+    public static final class Sampler {
+        private final long every;
+        private final AtomicLong count = new AtomicLong();
+
+        public Sampler(long every) {
+            this.every = Math.max(1, every);
+        }
+
+        public boolean sample() {
+            return count.getAndIncrement() % every == 0;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // ANILLO ASÍNCRONO
+    // ---------------------------------------------------------
+
+    private static final Appender APPENDER = new Appender(
+            Integer.getInteger("juego.log.buffer", 8192),
+            "json".equalsIgnoreCase(System.getProperty("juego.log.format", "text")));
+
+    // Casilla reutilizable; published se escribe al final y la hace visible
+    private static final class Event {
+        volatile long published = -1;
+        long time;
+        Level level;
+        String logger;
+        String thread;
+        String msg;
+        Object a, b, c;
+        Throwable error;
+    }
+
+    private static final class Appender implements Runnable {
+        // Tope de la espera sin eventos; publish() despierta antes al escritor
+        private static final long IDLE_PARK_NANOS = 1_000_000_000L;
+
+        private final Event[] ring;
+        private final int mask;
+        private final boolean json;
+        private final AtomicLong claimed = new AtomicLong();
+        private volatile long consumed;
+        private final LongAdder dropped = new LongAdder();
+        private final Thread writer;
+        // El escritor está por dormirse: quien publique debe despertarlo
+        private volatile boolean sleeping;
+
+        private final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 1 << 16);
+        private final Writer err = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.err), StandardCharsets.UTF_8), 1 << 12);
+        private final StringBuilder line = new StringBuilder(256);
+
+        Appender(int size, boolean json) {
+            int n = Integer.highestOneBit(Math.max(2, size - 1)) << 1;
+            this.ring = new Event[n];
+            for (int i = 0; i < n; i++) ring[i] = new Event();
+            this.mask = n - 1;
+            this.json = json;
+
+            writer = new Thread(this, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "log-flush"));
+        }
+
+        void publish(Level level, String logger, String msg, Object a, Object b, Object c, Throwable t) {
+            long seq;
+            do {
+                seq = claimed.get();
+                if (seq - consumed >= ring.length) {
+                    dropped.increment();
+                    return;
+                }
+            } while (!claimed.compareAndSet(seq, seq + 1));
+
+            Event e = ring[(int) seq & mask];
+            e.time = System.currentTimeMillis();
+            e.level = level;
+            e.logger = logger;
+            e.thread = Thread.currentThread().getName();
+            e.msg = msg;
+            e.a = a;
+            e.b = b;
+            e.c = c;
+            e.error = t;
+            e.published = seq;
+            if (sleeping) LockSupport.unpark(writer);
+        }
+
+        // Con el anillo vacío el hilo duerme hasta que llegue un evento; sólo
+        // hace flush si escribió algo desde el anterior
+        @Override
+        public void run() {
+            boolean unflushed = false;
+            while (true) {
+                if (writeAvailable()) {
+                    unflushed = true;
+                } else if (unflushed) {
+                    flushStreams();
+                    unflushed = false;
+                } else {
+                    sleeping = true;
+                    // se vuelve a mirar después de avisar: un evento publicado justo antes no se pierde
+                    if (!available()) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    sleeping = false;
+                }
+            }
+        }
+
+        private boolean available() {
+            long next = consumed;
+            return ring[(int) next & mask].published == next;
+        }
+
+        // Escribe los eventos publicados en orden; false si no había ninguno
+        private synchronized boolean writeAvailable() {
+            long next = consumed;
+            Event e = ring[(int) next & mask];
+            if (e.published != next) return false;
+            do {
+                write(e);
+                e.a = e.b = e.c = null;
+                e.error = null;
+                e.msg = null;
+                consumed = ++next;
+                e = ring[(int) next & mask];
+            } while (e.published == next);
+            return true;
+        }
+
+        void drain() {
+            long target = claimed.get();
+            long deadline = System.currentTimeMillis() + 2000;
+            while (consumed < target && System.currentTimeMillis() < deadline) {
+                if (!writeAvailable()) LockSupport.parkNanos(100_000L);
+            }
+            flushStreams();
+        }
+
+        private synchronized void flushStreams() {
+            try {
+                out.flush();
+                err.flush();
+            } catch (IOException ignored) {}
+        }
+
+        private void write(Event e) {
+            line.setLength(0);
+            if (json) {
+                line.append("{\"ts\":\"").append(Instant.ofEpochMilli(e.time))
+                        .append("\",\"level\":\"").append(e.level)
+                        .append("\",\"logger\":\"").append(e.logger)
+                        .append("\",\"thread\":\"");
+                jsonEscape(e.thread);
+                line.append("\",\"msg\":\"");
+                jsonEscape(format(e));
+                line.append('"');
+                if (e.error != null) {
+                    line.append(",\"error\":\"");
+                    jsonEscape(stackTrace(e.error));
+                    line.append('"');
+                }
+                line.append("}\n");
+            } else {
+                line.append(Instant.ofEpochMilli(e.time)).append(' ')
+                        .append(e.level).append(' ')
+                        .append(e.logger).append(" [").append(e.thread).append("] ")
+                        .append(format(e)).append('\n');
+                if (e.error != null) line.append(stackTrace(e.error));
+            }
+            try {
+                (e.level.ordinal() >= Level.WARN.ordinal() ? err : out).append(line);
+            } catch (IOException ignored) {}
+        }
+
+        // Sustituye cada {} por el argumento siguiente
+        private static String format(Event e) {
+            String msg = e.msg == null ? "" : e.msg;
+            if (e.a == null && e.b == null && e.c == null) return msg;
+            Object[] args = {e.a, e.b, e.c};
+            StringBuilder sb = new StringBuilder(msg.length() + 32);
+            int arg = 0;
+            int from = 0;
+            int at;
+            while (arg < args.length && (at = msg.indexOf("{}", from)) >= 0) {
+                sb.append(msg, from, at).append(args[arg++]);
+                from = at + 2;
+            }
+            return sb.append(msg, from, msg.length()).toString();
+        }
+
+        private static String stackTrace(Throwable t) {
+            StringWriter sw = new StringWriter();
+            t.printStackTrace(new PrintWriter(sw));
+            return sw.toString();
+        }
+
+        private void jsonEscape(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                switch (ch) {
+                    case '"': line.append("\\\""); break;
+                    case '\\': line.append("\\\\"); break;
+                    case '\n': line.append("\\n"); break;
+                    case '\r': line.append("\\r"); break;
+                    case '\t': line.append("\\t"); break;
+                    default:
+                        if (ch < 0x20) line.append(String.format("\\u%04x", (int) ch));
+                        else line.append(ch);
+                }
+            }
+        }
+    }
+}
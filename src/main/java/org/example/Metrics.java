@@ -0,0 +1,165 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Métricas del servidor en formato de texto de Prometheus (GET /metrics).
+ *
+ * Cada ruta tiene un histograma de latencia y contadores de respuestas por
+ * clase de código (2xx, 4xx...). Registrar una petición es una búsqueda
+ * lineal en un arreglo de límites y dos o tres LongAdder: sin bloqueos ni
+ * asignaciones, así que queda siempre activo. Los indicadores (salas,
+ * colas, ...) y los contadores acumulados (CPU, GC) se leen recién al pedir
+ * /metrics.
+ */
+public final class Metrics {
+
+    // Límites de los buckets de latencia, en segundos
+    private static final double[] LATENCY_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final String[] LE = new String[LATENCY_BUCKETS.length + 1];
+    static {
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) LE[i] = BigDecimal.valueOf(LATENCY_BUCKETS[i]).stripTrailingZeros().toPlainString();
+        LE[LATENCY_BUCKETS.length] = "+Inf";
+    }
+
+    private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    /** Métricas de una ruta; se pide una vez al registrar el handler. */
+    public Endpoint endpoint(String path) {
+        for (Endpoint e : endpoints) {
+            if (e.path.equals(path)) return e;
+        }
+        Endpoint e = new Endpoint(path);
+        endpoints.add(e);
+        return e;
+    }
+
+    /**
+     * Indicador leído en cada consulta. {@code labels} va tal cual entre
+     * llaves (p. ej. {@code pool="light"}) o null.
+     */
+    public void gauge(String name, String help, String labels, DoubleSupplier value) {
+        gauges.add(new Gauge(name, "gauge", help, labels, value));
+    }
+
+    /**
+     * Contador acumulado que ya lleva otro (la JVM, el sistema) y se lee en
+     * cada consulta; el nombre debe terminar en {@code _total}.
+     */
+    public void counter(String name, String help, String labels, DoubleSupplier value) {
+        if (!name.endsWith("_total")) throw new IllegalArgumentException("El contador " + name + " debe terminar en _total");
+        gauges.add(new Gauge(name, "counter", help, labels, value));
+    }
+
+    // ---------------------------------------------------------
+    // REGISTRO
+    // ---------------------------------------------------------
+
+    public static final class Endpoint {
+        private final String path;
+        private final long[] bounds = new long[LATENCY_BUCKETS.length];
+        // Conteo por bucket (no acumulado); el último es +Inf
+        private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+        // Respuestas por clase de código: índice código / 100 (1xx..5xx)
+        private final LongAdder[] responses = new LongAdder[6];
+
+        private Endpoint(String path) {
+            this.path = path;
+            for (int i = 0; i < bounds.length; i++) bounds[i] = (long) (LATENCY_BUCKETS[i] * 1e9);
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+            for (int i = 0; i < responses.length; i++) responses[i] = new LongAdder();
+        }
+
+        /** Registra una respuesta con su código y su duración desde {@code startNanos}. */
+        public void record(int code, long startNanos) {
+            long nanos = System.nanoTime() - startNanos;
+            int i = 0;
+            while (i < bounds.length && nanos > bounds[i]) i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+            int cls = code / 100;
+            responses[cls > 0 && cls < responses.length ? cls : 5].increment();
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String type;
+        final String help;
+        final String labels;
+        final DoubleSupplier value;
+
+        Gauge(String name, String type, String help, String labels, DoubleSupplier value) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // EXPOSICIÓN
+    // ---------------------------------------------------------
+
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(8192);
+
+        header(sb, "juego_http_request_duration_seconds", "histogram",
+                "Latencia de las peticiones HTTP desde que se aceptan hasta que se responden");
+        for (Endpoint e : endpoints) {
+            long cumulative = 0;
+            for (int i = 0; i < e.buckets.length; i++) {
+                cumulative += e.buckets[i].sum();
+                sb.append("juego_http_request_duration_seconds_bucket{path=\"").append(e.path)
+                        .append("\",le=\"").append(LE[i])
+                        .append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append("juego_http_request_duration_seconds_sum{path=\"").append(e.path).append("\"} ")
+                    .append(e.sumNanos.sum() / 1e9).append('\n');
+            sb.append("juego_http_request_duration_seconds_count{path=\"").append(e.path).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+
+        header(sb, "juego_http_responses_total", "counter", "Respuestas HTTP por ruta y clase de código");
+        for (Endpoint e : endpoints) {
+            for (int cls = 1; cls < e.responses.length; cls++) {
+                long n = e.responses[cls].sum();
+                if (n == 0) continue;
+                sb.append("juego_http_responses_total{path=\"").append(e.path)
+                        .append("\",code=\"").append(cls).append("xx\"} ").append(n).append('\n');
+            }
+        }
+
+        // Indicadores y contadores leídos agrupados por nombre: HELP y TYPE una sola vez por familia
+        Map<String, List<Gauge>> families = new LinkedHashMap<>();
+        for (Gauge g : gauges) families.computeIfAbsent(g.name, k -> new ArrayList<>()).add(g);
+        for (List<Gauge> family : families.values()) {
+            Gauge first = family.get(0);
+            header(sb, first.name, first.type, first.help);
+            for (Gauge g : family) {
+                sb.append(g.name);
+                if (g.labels != null) sb.append('{').append(g.labels).append('}');
+                sb.append(' ').append(format(g.value.getAsDouble())).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    // Enteros sin ".0" para que la salida sea más fácil de leer
+    private static String format(double v) {
+        return v == Math.rint(v) && !Double.isInfinite(v) ? Long.toString((long) v) : Double.toString(v);
+    }
+}
@@ -0,0 +1,58 @@
+package org.example;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Límite de peticiones por cliente con un balde de fichas por clave: se
+ * recargan {@code perSecond} fichas por segundo hasta {@code burst}, y cada
+ * petición gasta una. Los baldes que llevan un rato sin uso se descartan en
+ * un barrido periódico, fuera del camino de las peticiones.
+ */
+public class RateLimiter {
+
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // Un solo hilo barre todos los limitadores
+    private static final ScheduledExecutorService SWEEPER =
+            Executors.newSingleThreadScheduledExecutor(ServerExecutors.named("ratelimit-sweep"));
+
+    private final double perSecond;
+    private final double burst;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public RateLimiter(double perSecond, double burst) {
+        this.perSecond = perSecond;
+        this.burst = burst;
+        SWEEPER.scheduleWithFixedDelay(this::sweep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    private final class Bucket {
+        private double tokens = burst;
+        private long last = System.nanoTime();
+
+        synchronized boolean take(long now) {
+            tokens = Math.min(burst, tokens + (now - last) * perSecond / 1e9);
+            last = now;
+            if (tokens < 1) return false;
+            tokens--;
+            return true;
+        }
+
+        synchronized boolean idleSince(long now) {
+            return now - last > IDLE_NANOS;
+        }
+    }
+
+    public boolean tryAcquire(String key) {
+        long now = System.nanoTime();
+        return buckets.computeIfAbsent(key, k -> new Bucket()).take(now);
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(b -> b.idleSince(now));
+    }
+}
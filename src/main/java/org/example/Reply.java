@@ -0,0 +1,39 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+
+/** Respuesta de una operación del juego: código de estado y cuerpo XML. */
+public class Reply {
+
+    public final int code;
+    public final String xml;
+    // Validador de la versión de sala que produjo la respuesta (null si no aplica)
+    public final String etag;
+    private final byte[] bytes;
+
+    public Reply(int code, String xml) {
+        this(code, xml, null, null);
+    }
+
+    private Reply(int code, String xml, byte[] bytes, String etag) {
+        this.code = code;
+        this.xml = xml;
+        this.bytes = bytes;
+        this.etag = etag;
+    }
+
+    /** Respuesta cacheada de una sala: se reutilizan sus bytes ya codificados. */
+    public static Reply of(GameRoom.Snapshot snapshot) {
+        return new Reply(200, snapshot.xml, snapshot.bytes, snapshot.etag);
+    }
+
+    /** La sala no cambió desde la versión que ya tiene el cliente. */
+    public static Reply notModified(GameRoom.Snapshot snapshot) {
+        return new Reply(304, "", new byte[0], snapshot.etag);
+    }
+
+    public byte[] bytes() {
+        return bytes != null ? bytes : xml.getBytes(StandardCharsets.UTF_8);
+    }
+}
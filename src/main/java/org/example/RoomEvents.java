@@ -0,0 +1,275 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Flujo de eventos de sala (Server-Sent Events) para /events.
+ *
+ * Cada cliente suscrito deja abierta una respuesta HTTP chunked; los eventos
+ * de GameRoom se formatean una vez y se encolan en la cola acotada de cada
+ * suscriptor (-Djuego.sse.queue, 32 por defecto). Un pool fijo de hilos de
+ * escritura (-Djuego.sse.writers, 8) atiende a todos los suscriptores: a
+ * cada uno con mensajes pendientes le toca una tarea que vacía su cola y
+ * libera el hilo al terminar. Las tareas esperan en una cola acotada
+ * (-Djuego.sse.pending, 10000), así que un latido a miles de clientes no
+ * crea miles de hilos. Si la cola de un suscriptor se llena, una escritura
+ * lleva más de -Djuego.sse.stallSeconds (30) sin terminar o no hay lugar
+ * para su tarea, el suscriptor se descarta y su conexión se cierra.
+ *
+ * Ningún hilo HTTP queda bloqueado por conexión y una sala sin suscriptores
+ * no genera trabajo.
+ */
+public class RoomEvents implements RoomListener {
+
+    private static final Log LOG = Log.get(RoomEvents.class);
+
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final int QUEUE = Integer.getInteger("juego.sse.queue", 32);
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("juego.sse.stallSeconds", 30L));
+    private static final int WRITERS = Integer.getInteger("juego.sse.writers", 8);
+    private static final int PENDING = Integer.getInteger("juego.sse.pending", 10000);
+
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // Sólo encola latidos y revisa escrituras trabadas: nunca escribe en un socket
+    private final ScheduledExecutorService heartbeat =
+            Executors.newSingleThreadScheduledExecutor(ServerExecutors.named("room-events"));
+    // Vaciados de cola y cierres de conexión; a lo sumo una tarea de vaciado por suscriptor
+    private final Executor writers = ServerExecutors.bounded(ServerExecutors.configuredMode(),
+            WRITERS, PENDING, "room-events-writer");
+    // Conexiones descartadas cuyo cierre no entró en el pool; el latido reintenta
+    private final Queue<HttpExchange> pendingCloses = new ConcurrentLinkedQueue<>();
+
+    public RoomEvents() {
+        // Comentario SSE periódico: mantiene vivas las conexiones y detecta clientes caídos
+        byte[] ping = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+        heartbeat.scheduleAtFixedRate(() -> {
+            HttpExchange ex;
+            while ((ex = pendingCloses.poll()) != null) {
+                if (!submit(ex::close)) {
+                    pendingCloses.add(ex);
+                    break;
+                }
+            }
+            long now = System.nanoTime();
+            for (List<Subscriber> subs : subscribers.values()) {
+                for (Subscriber s : subs) {
+                    if (s.stalled(now)) s.drop("escritura trabada");
+                    if (!s.offer(ping)) subs.remove(s);
+                }
+            }
+        }, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private boolean submit(Runnable task) {
+        try {
+            writers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    // Marca de fin de flujo en la cola de un suscriptor
+    private static final byte[] END = new byte[0];
+
+    private final class Subscriber {
+        private final String roomId;
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE);
+        // true mientras haya un hilo de escritura asignado a este suscriptor
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long writeStarted; // 0 si no está escribiendo
+        private volatile boolean closed;
+
+        Subscriber(String roomId, HttpExchange exchange) {
+            this.roomId = roomId;
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        /** Encola sin bloquear; false si el suscriptor ya no recibe eventos. */
+        boolean offer(byte[] msg) {
+            if (closed) return false;
+            if (!queue.offer(msg)) {
+                drop("cola llena");
+                return false;
+            }
+            if (draining.compareAndSet(false, true) && !submit(this::drain)) {
+                draining.set(false);
+                drop("sin lugar en el pool de escritura");
+                return false;
+            }
+            return true;
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    byte[] msg;
+                    while (!closed && (msg = queue.poll()) != null) {
+                        writeStarted = System.nanoTime();
+                        if (msg == END) {
+                            out.flush();
+                            close();
+                            return;
+                        }
+                        out.write(msg);
+                    }
+                    if (!closed) {
+                        writeStarted = System.nanoTime();
+                        out.flush();
+                    }
+                    writeStarted = 0;
+                    draining.set(false);
+                    // Un mensaje encolado justo después del último poll() no debe quedar sin hilo;
+                    // se sigue en este mismo hilo en vez de pedir otra tarea al pool
+                    if (closed || queue.isEmpty() || !draining.compareAndSet(false, true)) return;
+                }
+            } catch (IOException e) {
+                writeStarted = 0;
+                draining.set(false);
+                close();
+            }
+        }
+
+        boolean stalled(long now) {
+            long started = writeStarted;
+            return started != 0 && now - started > STALL_NANOS;
+        }
+
+        void drop(String reason) {
+            if (closed) return;
+            LOG.info("Se descarta un suscriptor de {}: {}", roomId, reason);
+            // Cerrar puede bloquear si el socket está lleno: se hace en el pool de escritura
+            closed = true;
+            queue.clear();
+            if (!submit(exchange::close)) pendingCloses.add(exchange);
+        }
+
+        /** Cierra la conexión después de escribir lo ya encolado y {@code last}. */
+        void closeAfter(byte[] last) {
+            if (offer(last)) offer(END);
+        }
+
+        private void close() {
+            closed = true;
+            queue.clear();
+            exchange.close();
+        }
+    }
+
+    // ---------------------------------------------------------
+    // SUSCRIPCIÓN
+    // ---------------------------------------------------------
+
+    /**
+     * Abre el flujo y envía primero el estado actual de la sala. El handler
+     * puede retornar enseguida: la respuesta queda abierta para los eventos.
+     */
+    public void subscribe(GameRoom room, HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.sendResponseHeaders(200, 0);
+
+        Subscriber s = new Subscriber(room.getId(), ex);
+        List<Subscriber> subs = subscribers.computeIfAbsent(room.getId(), k -> new CopyOnWriteArrayList<>());
+        subs.add(s);
+
+        if (!s.offer(format("status", room.getStatusXML()))) subs.remove(s);
+    }
+
+    /** Cierra los flujos de una sala que ya no existe. */
+    public void roomClosed(String roomId) {
+        List<Subscriber> subs = subscribers.remove(roomId);
+        if (subs == null) return;
+        byte[] msg = format("closed", "<closed/>");
+        for (Subscriber s : subs) s.closeAfter(msg);
+    }
+
+    /** Tareas de escritura esperando hilo. */
+    public int writerBacklog() {
+        return ServerExecutors.queued(writers);
+    }
+
+    public int subscriberCount() {
+        int n = 0;
+        for (List<Subscriber> subs : subscribers.values()) n += subs.size();
+        return n;
+    }
+
+    private void publish(GameRoom room, String event, String data) {
+        List<Subscriber> subs = subscribers.get(room.getId());
+        if (subs == null || subs.isEmpty()) return;
+
+        byte[] msg = format(event, data);
+        for (Subscriber s : subs) {
+            if (!s.offer(msg)) subs.remove(s);
+        }
+    }
+
+    // Un salto de línea dentro de data cortaría el evento: cada línea va en su propio "data:"
+    static byte[] format(String event, String data) {
+        StringBuilder sb = new StringBuilder(data.length() + event.length() + 24);
+        sb.append("event: ").append(event).append("\ndata: ");
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '\r' || c == '\n') {
+                if (c == '\r' && i + 1 < data.length() && data.charAt(i + 1) == '\n') i++;
+                sb.append("\ndata: ");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append("\n\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ---------------------------------------------------------
+    // EVENTOS DE SALA
+    // ---------------------------------------------------------
+
+    @Override
+    public void playerJoined(GameRoom room, String player) {
+        publish(room, "playerJoined", "<player>" + Xml.escape(player) + "</player>");
+    }
+
+    @Override
+    public void playerLeft(GameRoom room, String player) {
+        publish(room, "playerLeft", "<player>" + Xml.escape(player) + "</player>");
+    }
+
+    @Override
+    public void gameStarted(GameRoom room, List<Round> rounds) {
+        publish(room, "gameStarted", "<rounds>" + rounds.size() + "</rounds>");
+    }
+
+    @Override
+    public void roundStarted(GameRoom room, int index, long startTime) {
+        publish(room, "roundStarted", room.getRoundXML());
+    }
+
+    @Override
+    public void scored(GameRoom room, String player, int points, int total) {
+        publish(room, "scored", "<scored><player>" + Xml.escape(player) + "</player><points>" + points
+                + "</points><total>" + total + "</total></scored>");
+    }
+
+    @Override
+    public void roundEnded(GameRoom room, int index) {
+        publish(room, "roundEnded", "<round>" + (index + 1) + "</round>");
+    }
+
+    @Override
+    public void gameOver(GameRoom room) {
+        publish(room, "gameOver", room.getFinalResultsXML());
+    }
+}
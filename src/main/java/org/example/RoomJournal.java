@@ -0,0 +1,411 @@
+package org.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Registro de salas (rooms.log) para sobrevivir a reinicios.
+ *
+ * Un evento de GameRoom sólo marca la sala como pendiente. Un hilo propio
+ * junta las salas pendientes, escribe de cada una una foto completa de su
+ * estado (un único State, leído de una vez, con su versión) y hace un solo
+ * flush por lote: los hilos de las peticiones y del temporizador no tocan
+ * el archivo y varios eventos seguidos de una sala se escriben una vez.
+ *
+ * Al reproducir gana, por sala, la foto de versión más alta; así no importa
+ * en qué orden se anotaron dos transiciones simultáneas. Las rondas no se
+ * copian: la foto guarda tamaño y CRC32 del catálogo de la partida y al
+ * restaurar se comparan con el catálogo actual. Si cambió, la sala vuelve a
+ * la espera con sus jugadores y puntajes.
+ */
+public class RoomJournal implements RoomListener, Closeable {
+
+    private static final Log LOG = Log.get(RoomJournal.class);
+
+    // Los tipos 1 a 10 eran los eventos sueltos del formato anterior
+    private static final byte REMOVE = 11;
+    private static final byte ROOM = 12;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final File file;
+    private final long compactBytes;
+    private Supplier<Collection<GameRoom>> liveRooms;
+
+    // Salas con cambios sin escribir y salas retiradas sin anotar
+    private final Map<String, GameRoom> dirty = new ConcurrentHashMap<>();
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+    private Thread writer;
+
+    // Sólo los toca el hilo escritor (o restore/close, antes y después de él)
+    private DataOutputStream out;
+    private long size;
+    // Salas ya retiradas en este archivo: una marca tardía no las revive
+    private final Set<String> tombstones = new HashSet<>();
+    // CRC del último catálogo visto; cambia sólo cuando se recarga
+    private List<Round> checksummed;
+    private long checksum;
+
+    public RoomJournal(File file, long compactBytes) {
+        this.file = file;
+        this.compactBytes = compactBytes;
+    }
+
+    /** Salas vivas, para compactar el registro cuando supera compactBytes. */
+    public void setLiveRooms(Supplier<Collection<GameRoom>> liveRooms) {
+        this.liveRooms = liveRooms;
+    }
+
+    // ---------------------------------------------------------
+    // RESTAURACIÓN
+    // ---------------------------------------------------------
+
+    private static final class RoomImage {
+        String id;
+        long version;
+        int maxPlayers;
+        String host;
+        final Map<String, Integer> scores = new LinkedHashMap<>();
+        boolean started;
+        int catalogSize;
+        long catalogChecksum;
+        int index;
+        long roundStart;
+        boolean finished;
+        final Set<String> answered = new HashSet<>();
+    }
+
+    /**
+     * Reconstruye las salas del registro, lo reescribe compactado y arranca
+     * el hilo escritor. Debe llamarse una vez, antes de registrar este
+     * objeto como oyente. {@code catalog} da las rondas actuales; sólo se
+     * pide si hay partidas empezadas.
+     */
+    public Map<String, GameRoom> restore(Supplier<List<Round>> catalog) {
+        Map<String, RoomImage> images = new LinkedHashMap<>();
+        Set<String> removedIds = new HashSet<>();
+
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                byte[] buf = new byte[256];
+                while (true) {
+                    int len;
+                    try {
+                        len = in.readInt();
+                        if (len <= 0) break;
+                        if (buf.length < len) buf = new byte[len];
+                        in.readFully(buf, 0, len);
+                    } catch (EOFException eof) {
+                        break; // registro incompleto al final: se ignora
+                    }
+                    apply(new DataInputStream(new ByteArrayInputStream(buf, 0, len)), images, removedIds);
+                }
+            } catch (IOException e) {
+                LOG.warn("rooms.log dañado, se restauran las salas leídas hasta el error: {}", e.getMessage());
+            }
+        }
+        images.keySet().removeAll(removedIds);
+
+        List<Round> rounds = null;
+        long roundsChecksum = 0;
+        Map<String, GameRoom> rooms = new LinkedHashMap<>();
+        for (RoomImage img : images.values()) {
+            GameRoom room = new GameRoom(img.id, img.maxPlayers);
+            room.setHost(img.host);
+            for (Map.Entry<String, Integer> p : img.scores.entrySet()) {
+                room.addPlayer(p.getKey());
+                room.restoreScore(p.getKey(), p.getValue());
+            }
+            if (img.started) {
+                if (rounds == null) {
+                    rounds = catalog.get();
+                    roundsChecksum = checksum(rounds);
+                }
+                if (rounds.size() == img.catalogSize && roundsChecksum == img.catalogChecksum) {
+                    room.restoreGame(rounds, img.index, img.roundStart, img.finished, img.answered);
+                } else {
+                    LOG.warn("Sala {}: el catálogo de rondas cambió desde el reinicio, la partida vuelve a la espera", img.id);
+                }
+            }
+            rooms.put(img.id, room);
+        }
+
+        try {
+            rewrite(rooms.values());
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo compactar " + file, e);
+        }
+        if (!rooms.isEmpty()) LOG.info("Restauradas {} salas desde {}", rooms.size(), file.getName());
+
+        writer = new Thread(this::run, "room-journal");
+        writer.setDaemon(true);
+        writer.start();
+        return rooms;
+    }
+
+    private static void apply(DataInputStream in, Map<String, RoomImage> images,
+                              Set<String> removedIds) throws IOException {
+        byte type = in.readByte();
+        String roomId = in.readUTF();
+
+        if (type == REMOVE) {
+            removedIds.add(roomId);
+            return;
+        }
+        if (type != ROOM) throw new IOException("Tipo de registro desconocido: " + type);
+
+        RoomImage img = new RoomImage();
+        img.id = roomId;
+        img.version = in.readLong();
+        RoomImage known = images.get(roomId);
+        if (known != null && known.version >= img.version) return; // foto más vieja que la ya leída
+
+        img.host = in.readUTF();
+        img.maxPlayers = in.readInt();
+        int players = in.readInt();
+        for (int i = 0; i < players; i++) img.scores.put(in.readUTF(), in.readInt());
+        img.started = in.readBoolean();
+        if (img.started) {
+            img.catalogSize = in.readInt();
+            img.catalogChecksum = in.readLong();
+            img.index = in.readInt();
+            img.roundStart = in.readLong();
+            img.finished = in.readBoolean();
+            int answered = in.readInt();
+            for (int i = 0; i < answered; i++) img.answered.add(in.readUTF());
+        }
+        images.put(roomId, img);
+    }
+
+    // ---------------------------------------------------------
+    // HILO ESCRITOR
+    // ---------------------------------------------------------
+
+    private void mark(GameRoom room) {
+        if (dirty.put(room.getId(), room) == null) LockSupport.unpark(writer);
+    }
+
+    private void run() {
+        while (running || !dirty.isEmpty() || !removed.isEmpty()) {
+            if (dirty.isEmpty() && removed.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                writeBatch();
+            } catch (IOException e) {
+                LOG.warn("No se pudo escribir en rooms.log: {}", e.getMessage());
+            }
+        }
+    }
+
+    // Un lote: retiros primero, después una foto por sala pendiente y un único flush
+    private void writeBatch() throws IOException {
+        for (Iterator<String> it = removed.iterator(); it.hasNext(); ) {
+            String id = it.next();
+            it.remove();
+            dirty.remove(id);
+            tombstones.add(id);
+            write(record(REMOVE, id));
+        }
+        for (Iterator<GameRoom> it = dirty.values().iterator(); it.hasNext(); ) {
+            GameRoom room = it.next();
+            it.remove();
+            if (!tombstones.contains(room.getId())) writeRoom(room);
+        }
+        out.flush();
+        maybeCompact();
+    }
+
+    // ---------------------------------------------------------
+    // COMPACTACIÓN
+    // ---------------------------------------------------------
+
+    // Escribe el estado actual de las salas en un archivo nuevo y lo reemplaza
+    private void rewrite(Collection<GameRoom> rooms) throws IOException {
+        if (out != null) out.close();
+        tombstones.clear();
+        size = 0;
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        for (GameRoom room : rooms) writeRoom(room);
+        out.close();
+
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("No se pudo reemplazar " + file);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    private void writeRoom(GameRoom room) throws IOException {
+        GameRoom.State s = room.currentState();
+        Record r = record(ROOM, room.getId()).int64(s.version).utf(room.getHost()).integer(room.getMaxPlayers());
+        r.integer(s.players.size());
+        for (String p : s.players) r.utf(p).integer(s.scores.getOrDefault(p, 0));
+        r.flag(s.started);
+        if (s.started) {
+            r.integer(s.rounds.size()).int64(catalogChecksum(s.rounds));
+            r.integer(s.index).int64(s.roundStartTime).flag(s.roundFinished);
+            r.integer(s.answered.size());
+            for (String p : s.answered) r.utf(p);
+        }
+        write(r);
+    }
+
+    private void maybeCompact() throws IOException {
+        if (compactBytes <= 0 || size < compactBytes || liveRooms == null) return;
+        long before = size;
+        rewrite(new ArrayList<>(liveRooms.get()));
+        LOG.info("rooms.log compactado: {} -> {} bytes", before, size);
+    }
+
+    // ---------------------------------------------------------
+    // CATÁLOGO
+    // ---------------------------------------------------------
+
+    // Todas las salas de una misma carga comparten la lista: se calcula una vez por recarga
+    private long catalogChecksum(List<Round> rounds) {
+        if (rounds != checksummed) {
+            checksum = checksum(rounds);
+            checksummed = rounds;
+        }
+        return checksum;
+    }
+
+    static long checksum(List<Round> rounds) {
+        CRC32 crc = new CRC32();
+        for (Round r : rounds) {
+            crc.update(r.word.getBytes(StandardCharsets.UTF_8));
+            for (String img : r.images) {
+                crc.update(0);
+                crc.update(img.getBytes(StandardCharsets.UTF_8));
+            }
+            crc.update(r.timeLimit >>> 24);
+            crc.update(r.timeLimit >>> 16);
+            crc.update(r.timeLimit >>> 8);
+            crc.update(r.timeLimit);
+        }
+        return crc.getValue();
+    }
+
+    // ---------------------------------------------------------
+    // ESCRITURA DE REGISTROS
+    // ---------------------------------------------------------
+
+    // Constructor de un registro: [longitud][tipo][sala][campos...]
+    // (escribe en memoria, así que las IOException no pueden ocurrir)
+    private static final class Record {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream data = new DataOutputStream(bytes);
+
+        Record utf(String s) {
+            try { data.writeUTF(s == null ? "" : s); } catch (IOException e) { throw new UncheckedIOException(e); }
+            return this;
+        }
+        Record integer(int v) {
+            try { data.writeInt(v); } catch (IOException e) { throw new UncheckedIOException(e); }
+            return this;
+        }
+        Record int64(long v) {
+            try { data.writeLong(v); } catch (IOException e) { throw new UncheckedIOException(e); }
+            return this;
+        }
+        Record flag(boolean v) {
+            bytes.write(v ? 1 : 0);
+            return this;
+        }
+    }
+
+    private static Record record(byte type, String roomId) {
+        Record r = new Record();
+        r.bytes.write(type);
+        r.utf(roomId);
+        return r;
+    }
+
+    private void write(Record r) throws IOException {
+        out.writeInt(r.bytes.size());
+        r.bytes.writeTo(out);
+        size += 4 + r.bytes.size();
+    }
+
+    // ---------------------------------------------------------
+    // EVENTOS
+    // ---------------------------------------------------------
+
+    public void roomCreated(GameRoom room) {
+        mark(room);
+    }
+
+    public void roomRemoved(String roomId) {
+        removed.add(roomId);
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public void playerJoined(GameRoom room, String player) {
+        mark(room);
+    }
+
+    @Override
+    public void playerLeft(GameRoom room, String player) {
+        mark(room);
+    }
+
+    @Override
+    public void gameStarted(GameRoom room, List<Round> rounds) {
+        mark(room);
+    }
+
+    @Override
+    public void roundStarted(GameRoom room, int index, long startTime) {
+        mark(room);
+    }
+
+    @Override
+    public void scored(GameRoom room, String player, int points, int total) {
+        mark(room);
+    }
+
+    @Override
+    public void answered(GameRoom room, String player) {
+        mark(room);
+    }
+
+    @Override
+    public void roundEnded(GameRoom room, int index) {
+        mark(room);
+    }
+
+    @Override
+    public void gameOver(GameRoom room) {
+        mark(room);
+    }
+
+    /** Escribe lo pendiente y cierra el archivo. */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Thread t = writer;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (out == null) return;
+        out.close();
+        out = null;
+    }
+}
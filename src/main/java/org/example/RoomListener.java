@@ -0,0 +1,30 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * Eventos que produce una GameRoom al cambiar de estado. Todos los métodos
+ * tienen una implementación vacía para que cada oyente sólo sobrescriba
+ * los que le interesan.
+ */
+public interface RoomListener {
+
+    default void playerJoined(GameRoom room, String player) {}
+
+    default void playerLeft(GameRoom room, String player) {}
+
+    default void gameStarted(GameRoom room, List<Round> rounds) {}
+
+    /** {@code index} empieza en 0; {@code startTime} en milisegundos epoch. */
+    default void roundStarted(GameRoom room, int index, long startTime) {}
+
+    /** {@code total} es el puntaje acumulado del jugador tras sumar {@code points}. */
+    default void scored(GameRoom room, String player, int points, int total) {}
+
+    /** El jugador acertó la palabra de la ronda actual. */
+    default void answered(GameRoom room, String player) {}
+
+    default void roundEnded(GameRoom room, int index) {}
+
+    default void gameOver(GameRoom room) {}
+}
@@ -0,0 +1,124 @@
+package org.example;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retira salas de GameServer.rooms para que el mapa no crezca sin límite:
+ *
+ *   -Djuego.rooms.idleMinutes=30      sin peticiones durante ese tiempo
+ *   -Djuego.rooms.gameOverMinutes=5   partida terminada y sin actividad
+ *   -Djuego.rooms.max=10000           tope de salas; al llegar se quitan
+ *                                     las de actividad más antigua
+ *   -Djuego.rooms.maxHeapPercent=90   con el heap por encima de ese uso
+ *                                     también se quitan las más antiguas
+ *
+ * Una sala retirada suelta su temporizador, se borra de rooms.log y cierra
+ * sus flujos de eventos; sus ids se recuerdan un tiempo para responder
+ * "Sala expirada" en vez de "Sala no existe". En cada revisión también se
+ * podan de la clasificación las salas viejas (ver Leaderboard.pruneRooms).
+ */
+public class RoomReaper {
+
+    private static final Log LOG = Log.get(RoomReaper.class);
+    private static final int REMEMBERED_IDS = 10_000;
+
+    private final Map<String, GameRoom> rooms;
+    private final RoomJournal journal;
+    private final RoomEvents events;
+    private final Leaderboard leaderboard;
+
+    private final long idleMillis = TimeUnit.MINUTES.toMillis(Long.getLong("juego.rooms.idleMinutes", 30L));
+    private final long gameOverMillis = TimeUnit.MINUTES.toMillis(Long.getLong("juego.rooms.gameOverMinutes", 5L));
+    private final int maxRooms = Integer.getInteger("juego.rooms.max", 10_000);
+    private final int maxHeapPercent = Integer.getInteger("juego.rooms.maxHeapPercent", 90);
+
+    // Ids retirados recientemente, del más viejo al más nuevo
+    private final Map<String, Boolean> expired = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > REMEMBERED_IDS;
+                }
+            });
+
+    public RoomReaper(Map<String, GameRoom> rooms, RoomJournal journal, RoomEvents events, Leaderboard leaderboard) {
+        this.rooms = rooms;
+        this.journal = journal;
+        this.events = events;
+        this.leaderboard = leaderboard;
+    }
+
+    /** Revisa las salas cada {@code periodSeconds} en un hilo propio. */
+    public void start(long periodSeconds) {
+        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(ServerExecutors.named("room-reaper"));
+        ses.scheduleWithFixedDelay(() -> {
+            try {
+                reap();
+            } catch (RuntimeException e) {
+                LOG.error("Fallo al revisar las salas", e);
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public boolean isExpired(String roomId) {
+        return roomId != null && expired.containsKey(roomId);
+    }
+
+    // ---------------------------------------------------------
+    // POLÍTICAS
+    // ---------------------------------------------------------
+
+    void reap() {
+        long now = System.currentTimeMillis();
+        for (GameRoom room : rooms.values()) {
+            long idle = now - room.getLastActivity();
+            if (idle > idleMillis) {
+                evict(room, "inactiva");
+            } else if (room.isGameOver() && idle > gameOverMillis) {
+                evict(room, "partida terminada");
+            }
+        }
+
+        if (rooms.size() > maxRooms) evictOldest(rooms.size() - maxRooms, "tope de salas");
+        if (heapPercent() > maxHeapPercent) evictOldest(Math.max(1, rooms.size() / 10), "memoria");
+
+        int pruned = leaderboard.pruneRooms(now);
+        if (pruned > 0) LOG.info("Clasificación: {} salas viejas descartadas", pruned);
+    }
+
+    /**
+     * Deja lugar para una sala nueva. Si se llegó al tope se retira de una
+     * vez el 1% más antiguo, para no ordenar todas las salas en cada alta.
+     */
+    public void makeRoom() {
+        int size = rooms.size();
+        if (size >= maxRooms) evictOldest(Math.max(1, size - maxRooms + 1 + maxRooms / 100), "tope de salas");
+    }
+
+    private void evictOldest(int count, String reason) {
+        List<GameRoom> byActivity = new ArrayList<>(rooms.values());
+        byActivity.sort(Comparator.comparingLong(GameRoom::getLastActivity));
+        for (int i = 0; i < count && i < byActivity.size(); i++) evict(byActivity.get(i), reason);
+    }
+
+    private static int heapPercent() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory();
+        return (int) (used * 100 / rt.maxMemory());
+    }
+
+    /** Retira la sala si sigue registrada; devuelve false si otro ya lo hizo. */
+    public boolean evict(GameRoom room, String reason) {
+        if (!rooms.remove(room.getId(), room)) return false;
+
+        expired.put(room.getId(), Boolean.TRUE);
+        room.close();
+        journal.roomRemoved(room.getId());
+        events.roomClosed(room.getId());
+        LOG.info("🧹 Sala {} retirada ({})", room.getId(), reason);
+        return true;
+    }
+}
@@ -1,19 +1,18 @@
 package org.example;
 
+/**
+ * Ronda del catálogo. Es inmutable: la misma instancia se comparte entre
+ * todas las salas, así que el momento de inicio lo guarda cada GameRoom.
+ */
 public class Round {
 
     public final String word;
     public final String[] images;
     public final int timeLimit;
-    public long startTime;
 
     public Round(String word, String[] images, int timeLimit) {
         this.word = word;
         this.images = images;
         this.timeLimit = timeLimit;
     }
-
-    public void start() {
-        this.startTime = System.currentTimeMillis();
-    }
 }
@@ -0,0 +1,26 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Instantánea inmutable de las rondas cargadas. Se reemplaza entera cuando
+ * cambia el archivo de origen, así que una partida en curso conserva la
+ * lista que recibió al empezar.
+ */
+public final class RoundCatalog {
+
+    public final List<Round> rounds;
+    public final long sourceModified;
+
+    /**
+     * No copia la lista: el llamador entrega una lista recién construida
+     * (o la vista de un RoundPack) que nadie más modifica.
+     */
+    public RoundCatalog(List<Round> rounds, long sourceModified) {
+        this.rounds = Collections.unmodifiableList(rounds);
+        this.sourceModified = sourceModified;
+    }
+
+    public int size() { return rounds.size(); }
+}
@@ -0,0 +1,160 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Catálogo de rondas compilado (ver RoundPackCompiler) y mapeado en memoria.
+ * Las rondas se decodifican bajo demanda al pedirlas por índice, así que el
+ * catálogo vive fuera del heap y abrirlo no depende de su tamaño.
+ *
+ * Formato (big-endian):
+ *   cabecera  [magic "RPK1"][versión][#rondas][#imágenes][#cadenas][reservado]
+ *   índice    por ronda: [cadena palabra][tiempo][primera imagen][#imágenes]
+ *   imágenes  por imagen: [cadena ruta]
+ *   offsets   #cadenas + 1 enteros, relativos al inicio de los datos
+ *   datos     bytes UTF-8 de todas las cadenas
+ */
+public final class RoundPack {
+
+    static final int MAGIC = 0x52504B31; // "RPK1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int INDEX_ENTRY_SIZE = 16;
+
+    private final ByteBuffer buf;
+    private final int roundCount;
+    private final int imageCount;
+    private final int stringCount;
+    private final int indexStart;
+    private final int imagesStart;
+    private final int offsetsStart;
+    private final int dataStart;
+
+    private RoundPack(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("No es un paquete de rondas");
+        }
+        if (buf.getInt(4) != VERSION) {
+            throw new IOException("Versión de paquete no soportada: " + buf.getInt(4));
+        }
+        roundCount = buf.getInt(8);
+        imageCount = buf.getInt(12);
+        stringCount = buf.getInt(16);
+
+        indexStart = HEADER_SIZE;
+        imagesStart = indexStart + roundCount * INDEX_ENTRY_SIZE;
+        offsetsStart = imagesStart + imageCount * 4;
+        dataStart = offsetsStart + (stringCount + 1) * 4;
+
+        if (roundCount < 0 || imageCount < 0 || stringCount < 0 || dataStart > buf.limit()
+                || dataStart + buf.getInt(offsetsStart + stringCount * 4) > buf.limit()) {
+            throw new IOException("Paquete de rondas truncado o corrupto");
+        }
+    }
+
+    /**
+     * Mapea el archivo en modo sólo lectura. El compilador reemplaza el
+     * archivo con un rename, por lo que un mapeo abierto sigue siendo válido.
+     */
+    public static RoundPack open(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath())) {
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new RoundPack(mapped);
+        }
+    }
+
+    public int size() { return roundCount; }
+
+    public Round get(int i) {
+        if (i < 0 || i >= roundCount) throw new IndexOutOfBoundsException("Ronda " + i);
+
+        int entry = indexStart + i * INDEX_ENTRY_SIZE;
+        String word = string(buf.getInt(entry));
+        int time = buf.getInt(entry + 4);
+        int firstImage = buf.getInt(entry + 8);
+        int images = buf.getInt(entry + 12);
+
+        String[] paths = new String[images];
+        for (int j = 0; j < images; j++) {
+            paths[j] = string(buf.getInt(imagesStart + (firstImage + j) * 4));
+        }
+        return new Round(word, paths, time);
+    }
+
+    private String string(int id) {
+        int start = buf.getInt(offsetsStart + id * 4);
+        int end = buf.getInt(offsetsStart + (id + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buf.duplicate();
+        view.position(dataStart + start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Vista de lista inmutable; cada get() decodifica la ronda del mapeo. */
+    public List<Round> asList() {
+        return new Rounds();
+    }
+
+    private final class Rounds extends AbstractList<Round> implements RandomAccess {
+        @Override public Round get(int index) { return RoundPack.this.get(index); }
+        @Override public int size() { return roundCount; }
+    }
+
+    // ---------------------------------------------------------
+    // ESCRITURA
+    // ---------------------------------------------------------
+
+    static void write(List<Round> rounds, OutputStream os) throws IOException {
+        // Tabla de cadenas sin duplicados (palabras y rutas de imagen)
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        int imageCount = 0;
+        for (Round r : rounds) {
+            intern(ids, r.word);
+            for (String img : r.images) intern(ids, img);
+            imageCount += r.images.length;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(rounds.size());
+        out.writeInt(imageCount);
+        out.writeInt(ids.size());
+        out.writeInt(0);
+
+        int nextImage = 0;
+        for (Round r : rounds) {
+            out.writeInt(ids.get(r.word));
+            out.writeInt(r.timeLimit);
+            out.writeInt(nextImage);
+            out.writeInt(r.images.length);
+            nextImage += r.images.length;
+        }
+        for (Round r : rounds) {
+            for (String img : r.images) out.writeInt(ids.get(img));
+        }
+
+        List<byte[]> data = new ArrayList<>(ids.size());
+        int offset = 0;
+        for (String s : ids.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            data.add(bytes);
+            out.writeInt(offset);
+            offset += bytes.length;
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : data) out.write(bytes);
+        out.flush();
+    }
+
+    private static void intern(Map<String, Integer> ids, String s) {
+        if (!ids.containsKey(s)) ids.put(s, ids.size());
+    }
+}
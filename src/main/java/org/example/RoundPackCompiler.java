@@ -0,0 +1,46 @@
+package org.example;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Compila rounds.xml a un paquete binario para el modo pack de XMLDatabase.
+ *
+ * Uso:
+ *   java -cp target/classes org.example.RoundPackCompiler \
+ *        src/main/resources/data/rounds.xml target/classes/data/rounds.pack
+ *
+ * y luego arrancar el servidor con -Djuego.rounds.source=pack.
+ */
+public class RoundPackCompiler {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Uso: RoundPackCompiler <rounds.xml> <rounds.pack>");
+            System.exit(2);
+        }
+        File in = new File(args[0]);
+        File out = new File(args[1]);
+
+        int count = compile(in, out);
+        System.out.println("Compiladas " + count + " rondas en " + out + " (" + out.length() + " bytes)");
+    }
+
+    public static int compile(File xml, File pack) throws IOException {
+        List<Round> rounds;
+        try (InputStream is = new FileInputStream(xml)) {
+            rounds = XMLDatabase.parseRounds(is);
+        }
+
+        // Se escribe a un temporal y se renombra, así los mapeos abiertos no se rompen
+        File tmp = new File(pack.getAbsoluteFile().getParentFile(), pack.getName() + ".tmp");
+        try (OutputStream os = new FileOutputStream(tmp)) {
+            RoundPack.write(rounds, os);
+        }
+        if (!tmp.renameTo(pack)) {
+            pack.delete();
+            if (!tmp.renameTo(pack)) throw new IOException("No se pudo reemplazar " + pack);
+        }
+        return rounds.size();
+    }
+}
@@ -0,0 +1,166 @@
+package org.example;
+
+import javax.xml.stream.*;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Lector en streaming (StAX) de rounds.xml. Entrega las rondas de una en una
+ * sin construir el documento completo, así que la memoria no depende del
+ * tamaño del catálogo y se puede parar en cualquier momento.
+ *
+ * Aplica las mismas reglas que el cargador DOM original: se omiten las
+ * rondas sin <word>, sin imágenes o con un <time> ausente o inválido.
+ */
+public class RoundStreamReader implements Iterator<Round>, Closeable {
+
+    private static final Log LOG = Log.get(RoundStreamReader.class);
+    private static final XMLInputFactory FACTORY = newFactory();
+
+    private final XMLStreamReader xml;
+    private Round next;
+    private int ordinal = 0; // número de <round> leídos, para los avisos
+
+    public RoundStreamReader(InputStream in) {
+        try {
+            this.xml = FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("No se pudo leer rounds.xml: " + e.getMessage(), e);
+        }
+    }
+
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
+    }
+
+    // ---------------------------------------------------------
+    // ITERADOR
+    // ---------------------------------------------------------
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) next = advance();
+        return next != null;
+    }
+
+    @Override
+    public Round next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Round r = next;
+        next = null;
+        return r;
+    }
+
+    private Round advance() {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && "round".equals(xml.getLocalName())) {
+                    ordinal++;
+                    Round r = readRound();
+                    if (r != null) return r;
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("rounds.xml mal formado: " + e.getMessage(), e);
+        }
+    }
+
+    // Lee desde <round> hasta su </round>; devuelve null si la ronda no es válida
+    private Round readRound() throws XMLStreamException {
+        String word = null;
+        String time = null;
+        List<String> images = new ArrayList<>(4);
+
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String tag = xml.getLocalName();
+                if ("word".equals(tag) && word == null) {
+                    word = xml.getElementText().trim();
+                } else if ("img".equals(tag)) {
+                    String imgPath = xml.getElementText().trim();
+                    if (!imgPath.isEmpty()) images.add(imgPath);
+                } else if ("time".equals(tag) && time == null) {
+                    time = xml.getElementText().trim();
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+
+        if (word == null || word.isEmpty()) {
+            LOG.warn("Ronda {} sin <word>, se omitirá", ordinal);
+            return null;
+        }
+        if (images.isEmpty()) {
+            LOG.warn("Ronda '{}' no tiene imágenes, se omitirá", word);
+            return null;
+        }
+        if (time == null || time.isEmpty()) {
+            LOG.warn("Ronda '{}' sin <time>, se omitirá", word);
+            return null;
+        }
+        try {
+            return new Round(word, images.toArray(new String[0]), Integer.parseInt(time));
+        } catch (NumberFormatException e) {
+            LOG.warn("Ronda '{}' tiene <time> inválido, se omitirá", word);
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            xml.close();
+        } catch (XMLStreamException ignored) {}
+    }
+
+    // ---------------------------------------------------------
+    // ATAJOS
+    // ---------------------------------------------------------
+
+    /** Lee todas las rondas válidas. */
+    public static List<Round> readAll(InputStream in) {
+        return readFirst(in, Integer.MAX_VALUE);
+    }
+
+    /** Lee como máximo {@code limit} rondas válidas y deja de parsear. */
+    public static List<Round> readFirst(InputStream in, int limit) {
+        List<Round> rounds = new ArrayList<>();
+        try (RoundStreamReader reader = new RoundStreamReader(in)) {
+            while (rounds.size() < limit && reader.hasNext()) rounds.add(reader.next());
+        }
+        return rounds;
+    }
+
+    /**
+     * Muestra aleatoria uniforme de {@code k} rondas (reservoir sampling):
+     * recorre el archivo una vez y sólo guarda k rondas en memoria.
+     */
+    public static List<Round> sample(InputStream in, int k, Random random) {
+        List<Round> reservoir = new ArrayList<>(k);
+        try (RoundStreamReader reader = new RoundStreamReader(in)) {
+            long seen = 0;
+            while (reader.hasNext()) {
+                Round r = reader.next();
+                seen++;
+                if (reservoir.size() < k) {
+                    reservoir.add(r);
+                } else {
+                    long j = (long) (random.nextDouble() * seen);
+                    if (j < k) reservoir.set((int) j, r);
+                }
+            }
+        }
+        return reservoir;
+    }
+}
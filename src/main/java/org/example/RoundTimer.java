@@ -0,0 +1,141 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Temporizador de rueda (hashed wheel) compartido por todas las salas.
+ * Un único hilo avanza la rueda cada {@code tickMillis}; programar y
+ * cancelar son O(1) y el número de hilos no depende de cuántas salas haya.
+ * La precisión es de un tick, más que suficiente para rondas de segundos.
+ *
+ * Las tareas corren en el hilo del temporizador: deben ser cortas.
+ */
+public final class RoundTimer {
+
+    private static final Log LOG = Log.get(RoundTimer.class);
+
+    private static volatile RoundTimer shared;
+
+    public static RoundTimer shared() {
+        RoundTimer t = shared;
+        if (t == null) {
+            synchronized (RoundTimer.class) {
+                t = shared;
+                if (t == null) {
+                    t = new RoundTimer(Long.getLong("juego.timer.tickMillis", 100L), 512);
+                    shared = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /** Tarea programada; cancel() evita que se ejecute si aún no lo hizo. */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds; // vueltas completas que faltan, sólo lo toca el hilo del temporizador
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public void cancel() { cancelled = true; }
+
+        public boolean isCancelled() { return cancelled; }
+    }
+
+    private final long tickMillis;
+    private final List<List<Timeout>> wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.currentTimeMillis();
+    private long tick = 0;
+    // Tareas en la rueda (incluye canceladas aún no barridas); sólo escribe el hilo del temporizador
+    private volatile int scheduled;
+    private volatile long lastTickTime = System.currentTimeMillis();
+
+    RoundTimer(long tickMillis, int wheelSize) {
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) wheel.add(new ArrayList<>());
+
+        Thread worker = new Thread(this::run, "round-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout t = new Timeout(task, System.currentTimeMillis() + Math.max(0, delayMillis));
+        pending.add(t);
+        return t;
+    }
+
+    /** Tareas programadas que aún no vencieron. */
+    public int scheduledCount() { return scheduled + pending.size(); }
+
+    /** Retraso del hilo de la rueda respecto del reloj; crece si las tareas tardan. */
+    public long lagMillis() {
+        return Math.max(0, System.currentTimeMillis() - lastTickTime - tickMillis);
+    }
+
+    // ---------------------------------------------------------
+    // HILO DE LA RUEDA
+    // ---------------------------------------------------------
+
+    private void run() {
+        while (true) {
+            long nextTick = startTime + (tick + 1) * tickMillis;
+            long sleep = nextTick - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            lastTickTime = System.currentTimeMillis();
+            transferPending();
+            expire(wheel.get((int) (tick % wheel.size())));
+            tick++;
+        }
+    }
+
+    // Coloca las tareas nuevas en su casilla según el tick en que vencen
+    private void transferPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.cancelled) continue;
+            long targetTick = Math.max(tick, (t.deadline - startTime + tickMillis - 1) / tickMillis - 1);
+            t.rounds = (targetTick - tick) / wheel.size();
+            wheel.get((int) (targetTick % wheel.size())).add(t);
+            scheduled++;
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+            Timeout t = it.next();
+            if (t.cancelled) {
+                it.remove();
+                scheduled--;
+            } else if (t.rounds > 0) {
+                t.rounds--;
+            } else {
+                it.remove();
+                scheduled--;
+                try {
+                    t.task.run();
+                } catch (Throwable e) {
+                    LOG.error("Fallo en una tarea del temporizador", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.example;
+
+public class ScoreEntry {
+
+    public final String player;
+    public final String room;
+    public final int points;
+    public final long timestamp;
+
+    public ScoreEntry(String player, String room, int points, long timestamp) {
+        this.player = player;
+        this.room = room;
+        this.points = points;
+        this.timestamp = timestamp;
+    }
+}
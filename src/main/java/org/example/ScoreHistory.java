@@ -0,0 +1,439 @@
+package org.example;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Historial de puntajes formado por segmentos ScoreJournal más una
+ * instantánea con los totales acumulados.
+ *
+ * Cada cierto número de puntajes se cierra el segmento activo, se escribe
+ * la instantánea con los totales acumulados y se borran los segmentos que
+ * ya quedan cubiertos por ella (compactación). Al arrancar sólo se carga
+ * la instantánea y se reproduce la cola, así que el tiempo de recuperación
+ * no crece con el historial.
+ *
+ * La instantánea guarda el total de cada jugador y, aparte, los totales por
+ * sala sólo de las salas con puntajes en las últimas
+ * -Djuego.scores.roomRetentionHours (24): los ids de sala son por partida,
+ * y guardarlas todas haría crecer la instantánea con cada partida jugada.
+ *
+ * Archivos en el directorio: scores-000001.journal, scores-000002.journal...
+ * y scores.snapshot.
+ */
+public class ScoreHistory implements ScoreSink, Closeable {
+
+    private static final Log LOG = Log.get(ScoreHistory.class);
+
+    /** Recibe los totales acumulados de cada par (sala, jugador). */
+    public interface TotalConsumer {
+        void accept(String room, String player, long total);
+    }
+
+    private static final String SEGMENT_PREFIX = "scores-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_NAME = "scores.snapshot";
+    private static final String LEGACY_JOURNAL = "scores.journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x53435331; // "SCS1"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final File dir;
+    private final ScoreJournal.FsyncPolicy fsync;
+    private final long fsyncIntervalMillis;
+    private final long snapshotEvery;
+    private final long roomRetentionMillis =
+            TimeUnit.HOURS.toMillis(Long.getLong("juego.scores.roomRetentionHours", 24L));
+
+    // Todo el estado mutable está protegido por el monitor de this
+    private final Totals totals = new Totals();
+    private ScoreJournal active;
+    private int activeSeq;
+    private int firstTailSeq = 1;   // primer segmento no cubierto por la instantánea
+    private long sinceSnapshot = 0; // puntajes escritos después de la instantánea
+    private boolean hasSnapshot = false;
+
+    public ScoreHistory(File dir, ScoreJournal.FsyncPolicy fsync, long fsyncIntervalMillis,
+                        long snapshotEvery) throws IOException {
+        this.dir = dir;
+        this.fsync = fsync;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotEvery = snapshotEvery;
+
+        migrateLegacyJournal();
+        recover();
+    }
+
+    // Totales por jugador de todo el historial y por sala de las salas recientes
+    private static final class Totals {
+        final Map<String, Long> players = new HashMap<>();
+        final Map<String, RoomTotals> rooms = new HashMap<>();
+
+        void add(String room, String player, long points, long timestamp) {
+            players.merge(player, points, Long::sum);
+            RoomTotals r = rooms.get(room);
+            if (r == null) {
+                r = new RoomTotals();
+                rooms.put(room, r);
+            }
+            r.players.merge(player, points, Long::sum);
+            r.lastScore = Math.max(r.lastScore, timestamp);
+        }
+    }
+
+    private static final class RoomTotals {
+        final Map<String, Long> players = new HashMap<>();
+        long lastScore; // milisegundos epoch del último puntaje
+    }
+
+    private File segment(int seq) {
+        return new File(dir, String.format("%s%06d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX));
+    }
+
+    private File snapshotFile() {
+        return new File(dir, SNAPSHOT_NAME);
+    }
+
+    private List<Integer> segmentSeqs() {
+        List<Integer> seqs = new ArrayList<>();
+        String[] names = dir.list();
+        if (names == null) return seqs;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    seqs.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        Collections.sort(seqs);
+        return seqs;
+    }
+
+    // El registro de un único archivo pasa a ser el primer segmento
+    private void migrateLegacyJournal() throws IOException {
+        File legacy = new File(dir, LEGACY_JOURNAL);
+        if (legacy.isFile() && segmentSeqs().isEmpty() && !snapshotFile().exists()) {
+            if (!legacy.renameTo(segment(1))) throw new IOException("No se pudo migrar " + legacy);
+        }
+    }
+
+    // ---------------------------------------------------------
+    // RECUPERACIÓN
+    // ---------------------------------------------------------
+
+    private synchronized void recover() throws IOException {
+        long start = System.currentTimeMillis();
+
+        if (snapshotFile().exists()) {
+            try (FileInputStream in = new FileInputStream(snapshotFile())) {
+                firstTailSeq = readSnapshot(in, SNAPSHOT_NAME, totals);
+            }
+            hasSnapshot = true;
+        }
+
+        List<Integer> seqs = segmentSeqs();
+        int lastSeq = firstTailSeq;
+        for (int seq : seqs) {
+            if (seq < firstTailSeq) {
+                // Compactación interrumpida: el segmento ya está en la instantánea
+                segment(seq).delete();
+                continue;
+            }
+            lastSeq = Math.max(lastSeq, seq);
+        }
+
+        for (int seq : seqs) {
+            if (seq < firstTailSeq || seq == lastSeq) continue;
+            try (InputStream in = new FileInputStream(segment(seq))) {
+                ScoreJournal.read(in, segment(seq).getName(), Long.MAX_VALUE, this::applyTail);
+            }
+        }
+
+        activeSeq = lastSeq;
+        active = new ScoreJournal(segment(activeSeq), fsync, fsyncIntervalMillis);
+        active.replay(this::applyTail);
+
+        LOG.info("Historial de puntajes recuperado: {}{} puntajes en cola ({} ms)",
+                hasSnapshot ? "instantánea + " : "", sinceSnapshot, System.currentTimeMillis() - start);
+    }
+
+    private void applyTail(ScoreEntry e) {
+        totals.add(e.room, e.player, e.points, e.timestamp);
+        sinceSnapshot++;
+    }
+
+    /** Total acumulado (instantánea + cola) de cada jugador en todo el historial. */
+    public synchronized void forEachPlayerTotal(BiConsumer<String, Long> consumer) {
+        totals.players.forEach(consumer);
+    }
+
+    /** Totales de cada par sala/jugador, sólo de las salas que aún no se podaron. */
+    public synchronized void forEachRoomTotal(TotalConsumer consumer) {
+        for (Map.Entry<String, RoomTotals> room : totals.rooms.entrySet()) {
+            for (Map.Entry<String, Long> p : room.getValue().players.entrySet()) {
+                consumer.accept(room.getKey(), p.getKey(), p.getValue());
+            }
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return !hasSnapshot && totals.players.isEmpty() && active.isEmpty();
+    }
+
+    // ---------------------------------------------------------
+    // ESCRITURA
+    // ---------------------------------------------------------
+
+    public void append(ScoreEntry entry) throws IOException {
+        append(Collections.singletonList(entry));
+    }
+
+    @Override
+    public synchronized void append(List<ScoreEntry> batch) throws IOException {
+        active.append(batch);
+        for (ScoreEntry e : batch) totals.add(e.room, e.player, e.points, e.timestamp);
+        sinceSnapshot += batch.size();
+        if (snapshotEvery > 0 && sinceSnapshot >= snapshotEvery) snapshot();
+    }
+
+    @Override
+    public synchronized void syncIfDue() throws IOException {
+        active.syncIfDue();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        active.flush();
+    }
+
+    // ---------------------------------------------------------
+    // INSTANTÁNEA Y COMPACTACIÓN
+    // ---------------------------------------------------------
+
+    /**
+     * Cierra el segmento activo, poda las salas sin puntajes recientes, guarda
+     * los totales y borra los segmentos cubiertos. Si el proceso muere a
+     * mitad, al arrancar se usa la instantánea anterior o se terminan de
+     * borrar los segmentos viejos.
+     */
+    public synchronized void snapshot() throws IOException {
+        long start = System.currentTimeMillis();
+        long cutoff = start - roomRetentionMillis;
+        int pruned = totals.rooms.size();
+        totals.rooms.values().removeIf(r -> r.lastScore < cutoff);
+        pruned -= totals.rooms.size();
+
+        active.close();
+        int nextSeq = activeSeq + 1;
+        active = new ScoreJournal(segment(nextSeq), fsync, fsyncIntervalMillis);
+        activeSeq = nextSeq;
+
+        File tmp = new File(dir, SNAPSHOT_NAME + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(fos, crc)));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(nextSeq);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(totals.players.size());
+            for (Map.Entry<String, Long> p : totals.players.entrySet()) {
+                out.writeUTF(p.getKey());
+                out.writeLong(p.getValue());
+            }
+            out.writeInt(totals.rooms.size());
+            for (Map.Entry<String, RoomTotals> room : totals.rooms.entrySet()) {
+                out.writeUTF(room.getKey());
+                out.writeLong(room.getValue().lastScore);
+                out.writeInt(room.getValue().players.size());
+                for (Map.Entry<String, Long> p : room.getValue().players.entrySet()) {
+                    out.writeUTF(p.getKey());
+                    out.writeLong(p.getValue());
+                }
+            }
+            out.flush();
+            new DataOutputStream(fos).writeInt((int) crc.getValue());
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(snapshotFile())) {
+            snapshotFile().delete();
+            if (!tmp.renameTo(snapshotFile())) throw new IOException("No se pudo reemplazar " + snapshotFile());
+        }
+
+        int compacted = 0;
+        for (int seq : segmentSeqs()) {
+            if (seq < nextSeq && segment(seq).delete()) compacted++;
+        }
+
+        firstTailSeq = nextSeq;
+        sinceSnapshot = 0;
+        hasSnapshot = true;
+        if (pruned > 0) LOG.info("Instantánea de puntajes: {} salas sin puntajes recientes podadas", pruned);
+        LOG.info("Instantánea de puntajes: {} jugadores, {} segmentos compactados ({} ms)",
+                totals.players.size(), compacted, System.currentTimeMillis() - start);
+    }
+
+    /** Suma la instantánea a {@code into} y devuelve el primer segmento que no cubre. */
+    private static int readSnapshot(FileInputStream fis, String f, Totals into) throws IOException {
+        long length = fis.getChannel().size();
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new CheckedInputStream(new BoundedInputStream(fis, length - 4), crc)));
+
+        if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Instantánea inválida: " + f);
+        int version = in.readInt();
+        if (version != 1 && version != SNAPSHOT_VERSION) throw new IOException("Versión de instantánea no soportada: " + f);
+        int firstTail = in.readInt();
+        long created = in.readLong();
+        if (version == 1) {
+            // Sólo totales por sala: se reparten igual, con la fecha de la instantánea
+            int rooms = in.readInt();
+            for (int i = 0; i < rooms; i++) {
+                String room = in.readUTF();
+                int players = in.readInt();
+                for (int j = 0; j < players; j++) into.add(room, in.readUTF(), in.readLong(), created);
+            }
+        } else {
+            int players = in.readInt();
+            for (int i = 0; i < players; i++) into.players.merge(in.readUTF(), in.readLong(), Long::sum);
+            int rooms = in.readInt();
+            for (int i = 0; i < rooms; i++) {
+                String room = in.readUTF();
+                RoomTotals r = into.rooms.computeIfAbsent(room, k -> new RoomTotals());
+                r.lastScore = Math.max(r.lastScore, in.readLong());
+                int n = in.readInt();
+                for (int j = 0; j < n; j++) r.players.merge(in.readUTF(), in.readLong(), Long::sum);
+            }
+        }
+        if (in.read() != -1) throw new IOException("Instantánea con datos sobrantes: " + f);
+
+        int expected = new DataInputStream(fis).readInt();
+        if (expected != (int) crc.getValue()) throw new IOException("Instantánea corrupta: " + f);
+        return firstTail;
+    }
+
+    // Limita la lectura para dejar fuera el CRC final
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+    }
+
+    // ---------------------------------------------------------
+    // LECTURA Y EXPORTACIÓN
+    // ---------------------------------------------------------
+
+    /**
+     * Recorre el historial: primero una entrada agregada por cada par
+     * sala/jugador de la instantánea, más una por jugador con sala vacía
+     * para lo que suman las salas ya podadas, y luego los puntajes de la cola.
+     */
+    public void replay(Consumer<ScoreEntry> consumer) throws IOException {
+        // Se abren los archivos bajo el lock; una compactación posterior puede
+        // borrarlos, pero los descriptores abiertos siguen siendo legibles
+        List<InputStream> segments = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        FileInputStream snapshot = null;
+        long activeLimit;
+        try {
+            synchronized (this) {
+                if (hasSnapshot) snapshot = new FileInputStream(snapshotFile());
+                for (int seq : segmentSeqs()) {
+                    if (seq < firstTailSeq || seq > activeSeq) continue;
+                    segments.add(new FileInputStream(segment(seq)));
+                    names.add(segment(seq).getName());
+                }
+                activeLimit = active.size();
+            }
+
+            if (snapshot != null) {
+                Totals t = new Totals();
+                readSnapshot(snapshot, SNAPSHOT_NAME, t);
+                Map<String, Long> older = new HashMap<>(t.players);
+                for (Map.Entry<String, RoomTotals> room : t.rooms.entrySet()) {
+                    for (Map.Entry<String, Long> p : room.getValue().players.entrySet()) {
+                        consumer.accept(entry(p.getKey(), room.getKey(), p.getValue()));
+                        older.merge(p.getKey(), -p.getValue(), Long::sum);
+                    }
+                }
+                for (Map.Entry<String, Long> p : older.entrySet()) {
+                    if (p.getValue() != 0) consumer.accept(entry(p.getKey(), "", p.getValue()));
+                }
+            }
+
+            for (int i = 0; i < segments.size(); i++) {
+                boolean last = i == segments.size() - 1;
+                ScoreJournal.read(segments.get(i), names.get(i), last ? activeLimit : Long.MAX_VALUE, consumer);
+            }
+        } finally {
+            if (snapshot != null) snapshot.close();
+            for (InputStream in : segments) in.close();
+        }
+    }
+
+    private static ScoreEntry entry(String player, String room, long total) {
+        return new ScoreEntry(player, room, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, total)), 0L);
+    }
+
+    /** Escribe el historial con el formato clásico <scores><entry .../></scores>. */
+    public void exportXML(Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<scores>\n");
+        writeEntries(out);
+        out.write("</scores>\n");
+        out.flush();
+    }
+
+    /** Escribe sólo los elementos <entry .../> del historial. */
+    public void writeEntries(Writer out) throws IOException {
+        final IOException[] failure = new IOException[1];
+        replay(e -> {
+            if (failure[0] != null) return;
+            try {
+                out.write("    <entry player=\"");
+                out.write(Xml.escape(e.player));
+                out.write("\" room=\"");
+                out.write(Xml.escape(e.room));
+                out.write("\" points=\"");
+                out.write(Integer.toString(e.points));
+                out.write("\"/>\n");
+            } catch (IOException ex) {
+                failure[0] = ex;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    /** Al cerrar se deja una instantánea para que el próximo arranque sea inmediato. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (sinceSnapshot > 0) snapshot();
+        active.close();
+    }
+}
@@ -0,0 +1,239 @@
+package org.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Segmento de solo-anexar del historial de puntajes (ver ScoreHistory).
+ *
+ * Formato del archivo: un entero mágico ("SCJ1") seguido de registros
+ * [longitud:int][crc32:int][timestamp:long][puntos:int][jugador:utf][sala:utf],
+ * donde cada cadena se escribe como longitud (unsigned short) + bytes UTF-8.
+ * Cada escritura es O(1): no se relee ni se reescribe el historial.
+ */
+public class ScoreJournal implements Closeable {
+
+    private static final Log LOG = Log.get(ScoreJournal.class);
+
+    public enum FsyncPolicy {
+        NEVER,      // el sistema operativo decide cuándo bajar a disco
+        ALWAYS,     // force() después de cada escritura
+        INTERVAL    // force() como máximo una vez por intervalo
+    }
+
+    private static final int MAGIC = 0x53434A31; // "SCJ1"
+    private static final int RECORD_HEADER = 8;  // longitud + crc
+    private static final int MAX_RECORD = 64 * 1024;
+
+    private final File file;
+    private final FsyncPolicy fsync;
+    private final long fsyncIntervalMillis;
+    private final FileChannel channel;
+
+    private long size;
+    private long lastSync = System.currentTimeMillis();
+    private boolean dirty = false;
+
+    public ScoreJournal(File file, FsyncPolicy fsync, long fsyncIntervalMillis) throws IOException {
+        this.file = file;
+        this.fsync = fsync;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+
+        if (channel.size() == 0) {
+            ByteBuffer magic = ByteBuffer.allocate(4).putInt(MAGIC);
+            magic.flip();
+            while (magic.hasRemaining()) channel.write(magic);
+            channel.force(true);
+            size = 4;
+        } else {
+            // Descarta una cola incompleta (p. ej. un corte de luz a mitad de escritura)
+            size = scan(file, Long.MAX_VALUE, null);
+            if (size < channel.size()) {
+                LOG.warn("{}: cola corrupta descartada ({} bytes)", file.getName(), channel.size() - size);
+                channel.truncate(size);
+            }
+        }
+        channel.position(size);
+    }
+
+    public File getFile() { return file; }
+
+    public synchronized boolean isEmpty() { return size <= 4; }
+
+    // ---------------------------------------------------------
+    // ESCRITURA
+    // ---------------------------------------------------------
+
+    public void append(ScoreEntry entry) throws IOException {
+        append(Collections.singletonList(entry));
+    }
+
+    public synchronized void append(List<ScoreEntry> batch) throws IOException {
+        if (batch.isEmpty()) return;
+
+        ByteBuffer buf = encode(batch);
+        int written = buf.remaining();
+        while (buf.hasRemaining()) channel.write(buf);
+        size += written;
+        dirty = true;
+
+        if (fsync == FsyncPolicy.ALWAYS) {
+            sync();
+        } else {
+            syncIfDue();
+        }
+    }
+
+    /** Con la política INTERVAL, baja a disco si ya venció el intervalo. */
+    public synchronized void syncIfDue() throws IOException {
+        if (dirty && fsync == FsyncPolicy.INTERVAL
+                && System.currentTimeMillis() - lastSync >= fsyncIntervalMillis) {
+            sync();
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        if (dirty) sync();
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        dirty = false;
+        lastSync = System.currentTimeMillis();
+    }
+
+    private static ByteBuffer encode(List<ScoreEntry> batch) {
+        List<byte[]> names = new ArrayList<>(batch.size() * 2);
+        int total = 0;
+        for (ScoreEntry e : batch) {
+            byte[] player = utf(e.player);
+            byte[] room = utf(e.room);
+            names.add(player);
+            names.add(room);
+            total += RECORD_HEADER + bodyLength(player, room);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < batch.size(); i++) {
+            ScoreEntry e = batch.get(i);
+            byte[] player = names.get(i * 2);
+            byte[] room = names.get(i * 2 + 1);
+
+            int start = buf.position();
+            buf.putInt(bodyLength(player, room));
+            buf.putInt(0); // crc, se rellena abajo
+            int bodyStart = buf.position();
+            buf.putLong(e.timestamp);
+            buf.putInt(e.points);
+            buf.putShort((short) player.length).put(player);
+            buf.putShort((short) room.length).put(room);
+
+            crc.reset();
+            crc.update(buf.array(), bodyStart, buf.position() - bodyStart);
+            buf.putInt(start + 4, (int) crc.getValue());
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static int bodyLength(byte[] player, byte[] room) {
+        return 8 + 4 + 2 + player.length + 2 + room.length;
+    }
+
+    private static byte[] utf(String s) {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) throw new IllegalArgumentException("Cadena demasiado larga: " + b.length + " bytes");
+        return b;
+    }
+
+    // ---------------------------------------------------------
+    // LECTURA
+    // ---------------------------------------------------------
+
+    /** Recorre todos los registros válidos en orden de escritura. */
+    public void replay(Consumer<ScoreEntry> consumer) throws IOException {
+        long limit;
+        synchronized (this) {
+            limit = size;
+        }
+        scan(file, limit, consumer);
+    }
+
+    /** Tamaño en bytes de la parte válida del registro. */
+    public synchronized long size() { return size; }
+
+    private static long scan(File f, long limit, Consumer<ScoreEntry> consumer) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            return read(in, f.getName(), limit, consumer);
+        }
+    }
+
+    /**
+     * Lee registros hasta {@code limit} bytes o hasta el primer registro
+     * incompleto o corrupto. Devuelve el offset donde termina el último válido.
+     * No cierra el stream.
+     */
+    static long read(InputStream is, String name, long limit, Consumer<ScoreEntry> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is, 64 * 1024));
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("No es un registro de puntajes: " + name);
+        }
+
+        long offset = 4;
+        byte[] body = new byte[256];
+        CRC32 crc = new CRC32();
+
+        while (offset < limit) {
+            int len;
+            int expectedCrc;
+            try {
+                len = in.readInt();
+                if (len <= 0 || len > MAX_RECORD) break;
+                expectedCrc = in.readInt();
+                if (body.length < len) body = new byte[Math.max(len, body.length * 2)];
+                in.readFully(body, 0, len);
+            } catch (EOFException eof) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(body, 0, len);
+            if ((int) crc.getValue() != expectedCrc) break;
+
+            if (consumer != null) consumer.accept(decode(body, len));
+            offset += RECORD_HEADER + len;
+        }
+        return offset;
+    }
+
+    private static ScoreEntry decode(byte[] body, int len) {
+        ByteBuffer b = ByteBuffer.wrap(body, 0, len);
+        long timestamp = b.getLong();
+        int points = b.getInt();
+        String player = readUtf(b);
+        String room = readUtf(b);
+        return new ScoreEntry(player, room, points, timestamp);
+    }
+
+    private static String readUtf(ByteBuffer b) {
+        int n = b.getShort() & 0xFFFF;
+        String s = new String(b.array(), b.position(), n, StandardCharsets.UTF_8);
+        b.position(b.position() + n);
+        return s;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) return;
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,17 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Destino de los lotes que escribe el ScoreWriter. */
+public interface ScoreSink {
+
+    /** Escribe el lote completo en una sola operación (group commit). */
+    void append(List<ScoreEntry> batch) throws IOException;
+
+    /** Llamado cuando no hay tráfico, para aplicar políticas de fsync por intervalo. */
+    default void syncIfDue() throws IOException {}
+
+    /** Garantiza que todo lo escrito sea durable. */
+    void flush() throws IOException;
+}
@@ -0,0 +1,181 @@
+package org.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escritor asíncrono de puntajes. Los hilos HTTP sólo encolan el evento;
+ * un hilo dedicado vacía la cola por lotes y hace un único append (y un
+ * único fsync, según la política del registro) por lote.
+ */
+public class ScoreWriter implements AutoCloseable {
+
+    private static final Log LOG = Log.get(ScoreWriter.class);
+    private static final Log.Sampler DROP_SAMPLER = new Log.Sampler(1000);
+
+    public enum Backpressure {
+        BLOCK,        // espera hasta que haya sitio, sin límite de tiempo
+        DROP,         // descarta el puntaje, lo contabiliza y lo avisa en el log
+        CALLER_RUNS   // escribe de forma síncrona en el hilo que llama
+    }
+
+    private final ScoreSink sink;
+    private final BlockingQueue<ScoreEntry> queue;
+    private final Backpressure backpressure;
+    private final int maxBatch;
+    private final Thread thread;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object writtenLock = new Object();
+    private long written = 0; // protegido por writtenLock
+
+    private volatile boolean running = true;
+
+    public ScoreWriter(ScoreSink sink, int capacity, int maxBatch, Backpressure backpressure) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.backpressure = backpressure;
+
+        this.thread = new Thread(this::run, "score-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Crea un escritor configurado con las propiedades juego.scores.*. */
+    public static ScoreWriter create(ScoreSink sink) {
+        return new ScoreWriter(sink,
+                Integer.getInteger("juego.scores.queue", 8192),
+                Integer.getInteger("juego.scores.batch", 512),
+                Backpressure.valueOf(System.getProperty("juego.scores.backpressure", "BLOCK").toUpperCase()));
+    }
+
+    // ---------------------------------------------------------
+    // PRODUCTORES
+    // ---------------------------------------------------------
+
+    /**
+     * Acepta el puntaje (encolado o escrito) o lo descarta según la política;
+     * devuelve false si se descartó, para que quien llama no lo cuente.
+     */
+    public boolean submit(ScoreEntry entry) {
+        if (!running) return writeDirect(entry);
+        if (queue.offer(entry)) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+
+        switch (backpressure) {
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                    enqueued.incrementAndGet();
+                    return true;
+                } catch (InterruptedException e) {
+                    // sólo al apagar: el puntaje no llegó a la cola
+                    Thread.currentThread().interrupt();
+                    drop(entry);
+                    return false;
+                }
+            case CALLER_RUNS:
+                return writeDirect(entry);
+            default:
+                drop(entry);
+                return false;
+        }
+    }
+
+    private void drop(ScoreEntry entry) {
+        long n = dropped.incrementAndGet();
+        // con la cola saturada esto pasa en ráfaga: se avisa uno de cada mil
+        if (DROP_SAMPLER.sample()) {
+            LOG.warn("Cola de puntajes llena, descartado {} +{} ({} descartados)", entry.player, entry.points, n);
+        }
+    }
+
+    private boolean writeDirect(ScoreEntry entry) {
+        try {
+            sink.append(Collections.singletonList(entry));
+            return true;
+        } catch (IOException e) {
+            LOG.error("No se pudo guardar el puntaje de {}", entry.player, e);
+            return false;
+        }
+    }
+
+    public int backlog() { return queue.size(); }
+
+    public long droppedCount() { return dropped.get(); }
+
+    /** Espera a que todo lo encolado antes de la llamada esté escrito. */
+    public void flush() throws InterruptedException {
+        long target = enqueued.get();
+        synchronized (writtenLock) {
+            while (written < target && thread.isAlive()) {
+                writtenLock.wait(100);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------
+    // HILO ESCRITOR
+    // ---------------------------------------------------------
+
+    private void run() {
+        List<ScoreEntry> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                ScoreEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    sink.syncIfDue(); // respeta el intervalo de fsync aun sin tráfico
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                // close() se encarga de vaciar lo que quede
+            } catch (IOException e) {
+                LOG.error("No se pudo guardar un lote de {} puntajes", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<ScoreEntry> batch) throws IOException {
+        try {
+            sink.append(batch);
+        } finally {
+            synchronized (writtenLock) {
+                written += batch.size();
+                writtenLock.notifyAll();
+            }
+        }
+    }
+
+    /** Detiene el hilo tras escribir todo lo pendiente y fuerza el registro a disco. */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<ScoreEntry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        try {
+            if (!rest.isEmpty()) commit(rest);
+            sink.flush();
+        } catch (IOException e) {
+            LOG.error("No se pudieron guardar los puntajes pendientes", e);
+        }
+    }
+}
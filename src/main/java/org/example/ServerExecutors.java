@@ -0,0 +1,120 @@
+package org.example;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutores para los handlers HTTP, elegidos por configuración:
+ *
+ *   -Djuego.executor=platform  pools fijos de hilos de plataforma (por defecto)
+ *   -Djuego.executor=virtual   un hilo virtual por petición (Java 21+)
+ *
+ * El tamaño y la cola de cada pool se configuran en GameServer
+ * (-Djuego.http.<clase>.threads / .queue; -Djuego.threads es el tamaño por
+ * defecto de los pools livianos).
+ *
+ * Con hilos virtuales un handler bloqueado (disco, imágenes) no deja sin
+ * hilos a las demás salas.
+ */
+public final class ServerExecutors {
+
+    public enum Mode { PLATFORM, VIRTUAL }
+
+    private static final Log LOG = Log.get(ServerExecutors.class);
+
+    private ServerExecutors() {}
+
+    public static Mode configuredMode() {
+        return Mode.valueOf(System.getProperty("juego.executor", "platform").toUpperCase());
+    }
+
+    public static ExecutorService create(Mode mode, int platformThreads, String name) {
+        if (mode == Mode.VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) return virtual;
+            LOG.warn("Hilos virtuales no disponibles en esta JVM ({}), se usa un pool de {} hilos",
+                    System.getProperty("java.version"), platformThreads);
+        }
+        return Executors.newFixedThreadPool(platformThreads, named(name));
+    }
+
+    /**
+     * Ejecutor con trabajo acotado: a lo sumo {@code threads} tareas en curso y
+     * {@code queue} esperando. Si no hay lugar, execute() lanza
+     * RejectedExecutionException enseguida en vez de encolar sin límite.
+     * Con hilos virtuales el tope es el total de tareas en vuelo.
+     */
+    public static Executor bounded(Mode mode, int threads, int queue, String name) {
+        if (mode == Mode.VIRTUAL) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+            if (virtual != null) return new InFlightLimit(virtual, threads + queue);
+            LOG.warn("Hilos virtuales no disponibles en esta JVM ({}), se usa un pool de {} hilos",
+                    System.getProperty("java.version"), threads);
+        }
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), named(name));
+    }
+
+    /** Tareas esperando hilo en un ejecutor de bounded() (con hilos virtuales no hay cola). */
+    public static int queued(Executor executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /** Tareas en curso en un ejecutor de bounded(). */
+    public static int active(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) return ((ThreadPoolExecutor) executor).getActiveCount();
+        if (executor instanceof InFlightLimit) return ((InFlightLimit) executor).inFlight();
+        return 0;
+    }
+
+    private static final class InFlightLimit implements Executor {
+        private final Executor delegate;
+        private final int limit;
+        private final Semaphore permits;
+
+        InFlightLimit(Executor delegate, int limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+            this.permits = new Semaphore(limit);
+        }
+
+        int inFlight() { return limit - permits.availablePermits(); }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!permits.tryAcquire()) throw new RejectedExecutionException("Sin lugar para más tareas");
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    // Se invoca por reflexión para seguir compilando con target 8
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    static ThreadFactory named(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package org.example;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Puntajes repartidos en N particiones independientes según el hash de la
+ * sala. Cada partición tiene su propio historial (archivos y monitor) y su
+ * propio ScoreWriter, así que las escrituras de salas distintas no compiten
+ * por el mismo lock ni por el mismo archivo.
+ *
+ * La partición 0 usa el directorio de datos (compatible con el historial
+ * sin particiones); la i-ésima usa scores-shard-i/. Si se reduce el número
+ * de particiones, las que sobran se siguen leyendo pero ya no reciben puntajes.
+ */
+public class ShardedScoreStore implements Closeable {
+
+    private static final Log LOG = Log.get(ShardedScoreStore.class);
+    private static final String SHARD_DIR_PREFIX = "scores-shard-";
+
+    private final List<ScoreHistory> histories = new ArrayList<>();
+    private final List<ScoreWriter> writers = new ArrayList<>();
+    private final int writableShards;
+
+    public ShardedScoreStore(File dataDir, int shards, ScoreJournal.FsyncPolicy fsync,
+                             long fsyncIntervalMillis, long snapshotEvery) throws IOException {
+        this.writableShards = Math.max(1, shards);
+
+        int total = Math.max(writableShards, existingShards(dataDir));
+        try {
+            for (int i = 0; i < total; i++) {
+                File dir = i == 0 ? dataDir : new File(dataDir, SHARD_DIR_PREFIX + i);
+                if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("No se pudo crear " + dir);
+                ScoreHistory h = new ScoreHistory(dir, fsync, fsyncIntervalMillis, snapshotEvery);
+                histories.add(h);
+                writers.add(ScoreWriter.create(h));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static int existingShards(File dataDir) {
+        int max = 1;
+        String[] names = dataDir.list();
+        if (names == null) return max;
+        for (String name : names) {
+            if (!name.startsWith(SHARD_DIR_PREFIX)) continue;
+            try {
+                max = Math.max(max, Integer.parseInt(name.substring(SHARD_DIR_PREFIX.length())) + 1);
+            } catch (NumberFormatException ignored) {}
+        }
+        return max;
+    }
+
+    private int shardOf(String room) {
+        return (room.hashCode() & 0x7fffffff) % writableShards;
+    }
+
+    public int shardCount() { return writableShards; }
+
+    // ---------------------------------------------------------
+    // ESCRITURA
+    // ---------------------------------------------------------
+
+    /** false si el escritor de la partición descartó el puntaje (ver ScoreWriter.submit). */
+    public boolean submit(ScoreEntry entry) {
+        return writers.get(shardOf(entry.room)).submit(entry);
+    }
+
+    /** Escritura síncrona en la partición de cada entrada (migraciones). */
+    public void appendNow(List<ScoreEntry> entries) throws IOException {
+        Map<Integer, List<ScoreEntry>> byShard = new HashMap<>();
+        for (ScoreEntry e : entries) {
+            byShard.computeIfAbsent(shardOf(e.room), k -> new ArrayList<>()).add(e);
+        }
+        for (Map.Entry<Integer, List<ScoreEntry>> shard : byShard.entrySet()) {
+            ScoreHistory h = histories.get(shard.getKey());
+            h.append(shard.getValue());
+            h.flush();
+        }
+    }
+
+    /** Espera a que todas las particiones hayan escrito lo encolado hasta ahora. */
+    public void flush() throws InterruptedException {
+        for (ScoreWriter w : writers) w.flush();
+    }
+
+    public int backlog() {
+        int n = 0;
+        for (ScoreWriter w : writers) n += w.backlog();
+        return n;
+    }
+
+    // ---------------------------------------------------------
+    // VISTA COMBINADA
+    // ---------------------------------------------------------
+
+    public boolean isEmpty() {
+        for (ScoreHistory h : histories) {
+            if (!h.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /** Totales por jugador de cada partición (un jugador aparece en varias: hay que sumarlos). */
+    public void forEachPlayerTotal(BiConsumer<String, Long> consumer) {
+        for (ScoreHistory h : histories) h.forEachPlayerTotal(consumer);
+    }
+
+    /** Totales por sala de todas las particiones (una sala puede aparecer en varias). */
+    public void forEachRoomTotal(ScoreHistory.TotalConsumer consumer) {
+        for (ScoreHistory h : histories) h.forEachRoomTotal(consumer);
+    }
+
+    /** Exporta partición por partición; dentro de cada una se respeta el orden de escritura. */
+    public void exportXML(Writer out) throws IOException {
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<scores>\n");
+        for (ScoreHistory h : histories) h.writeEntries(out);
+        out.write("</scores>\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        for (ScoreWriter w : writers) w.close();
+        for (ScoreHistory h : histories) {
+            try {
+                h.close();
+            } catch (IOException e) {
+                LOG.error("No se pudo cerrar un historial de puntajes", e);
+            }
+        }
+    }
+}
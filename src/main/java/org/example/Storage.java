@@ -0,0 +1,59 @@
+package org.example;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Selección del backend de almacenamiento y del directorio de datos.
+ *
+ *   -Djuego.storage=xml       rounds.xml + historial de puntajes (por defecto)
+ *   -Djuego.storage=embedded  base de datos embebida (ver EmbeddedDatabase)
+ *   -Djuego.data.dir=<dir>    directorio de datos
+ */
+public final class Storage {
+
+    private static final Log LOG = Log.get(Storage.class);
+
+    private Storage() {}
+
+    public static GameStorage open() {
+        String backend = System.getProperty("juego.storage", "xml");
+        File dir = dataDir();
+        LOG.info("Almacenamiento '{}' en {}", backend, dir.getAbsolutePath());
+
+        switch (backend.toLowerCase()) {
+            case "xml":
+                return new XMLDatabase(dir);
+            case "embedded":
+                return new EmbeddedDatabase(dir);
+            default:
+                throw new IllegalArgumentException("Backend de almacenamiento desconocido: " + backend);
+        }
+    }
+
+    /**
+     * Directorio de datos: el indicado en juego.data.dir; si no, la carpeta
+     * data/ de los recursos cuando están en disco (desarrollo) o ./data
+     * cuando la aplicación corre desde un jar.
+     */
+    public static File dataDir() {
+        String configured = System.getProperty("juego.data.dir");
+        File dir;
+        if (configured != null) {
+            dir = new File(configured);
+        } else {
+            dir = new File("data");
+            URL res = Storage.class.getClassLoader().getResource("data/rounds.xml");
+            if (res != null && "file".equals(res.getProtocol())) {
+                try {
+                    dir = new File(res.toURI()).getParentFile();
+                } catch (URISyntaxException ignored) {}
+            }
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("No se pudo crear el directorio de datos " + dir);
+        }
+        return dir;
+    }
+}
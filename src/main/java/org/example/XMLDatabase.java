@@ -6,27 +6,56 @@ import javax.xml.parsers.*;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import java.io.File;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
 
 
-public class XMLDatabase {
+public class XMLDatabase implements GameStorage {
 
-    private final File roundsFile =
-            new File(getClass().getClassLoader().getResource("data/rounds.xml").getFile());
+    private static final Log LOG = Log.get(XMLDatabase.class);
 
-    private final File scoresFile =
-            new File(getClass().getClassLoader().getResource("data/scores.xml").getFile());
+    private final File roundsFile;
+    private final File scoresFile;
+
+    // Historiales de solo-anexar particionados por sala, cada uno con su
+    // escritor asíncrono; scores.xml se genera a demanda con exportScores()
+    private final ShardedScoreStore scores;
+    // Ranking en memoria, reconstruido desde el registro al arrancar
+    private final Leaderboard leaderboard = new Leaderboard();
+
+
+    // Catálogo de rondas compartido; se cambia de golpe al recargar
+    private final AtomicReference<RoundCatalog> catalog = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+    private final long reloadCheckMillis = Long.getLong("juego.rounds.checkMillis", 1000L);
+    private volatile long lastReloadCheck = 0;
+
+    // Modo pack: catálogo compilado con RoundPackCompiler y mapeado en memoria
+    private final boolean usePack =
+            "pack".equalsIgnoreCase(System.getProperty("juego.rounds.source", "xml"));
+    private final File packFile;
 
 
     public XMLDatabase() {
+        this(Storage.dataDir());
+    }
+
+    public XMLDatabase(File dataDir) {
+        roundsFile = new File(dataDir, "rounds.xml");
+        scoresFile = new File(dataDir, "scores.xml");
+        packFile = new File(System.getProperty("juego.rounds.pack",
+                new File(dataDir, "rounds.pack").getPath()));
+
         ensureFiles();
+        scores = openScores();
+        rebuildLeaderboard();
     }
 
     private void ensureFiles() {
-        if (!roundsFile.exists()) {
-            System.err.println("⚠️ Falta rounds.xml");
+        if (!roundsFile.exists() && getClass().getClassLoader().getResource("data/rounds.xml") == null) {
+            LOG.warn("Falta rounds.xml");
         }
         if (!scoresFile.exists()) {
             try {
@@ -50,69 +79,131 @@ public class XMLDatabase {
         t.transform(new DOMSource(doc), new StreamResult(f));
     }
 
-    // ---------------------------------------------------------
-    // CARGAR RONDAS
-    // ---------------------------------------------------------
+    private ShardedScoreStore openScores() {
+        File dir = scoresFile.getParentFile();
+        ScoreJournal.FsyncPolicy fsync = ScoreJournal.FsyncPolicy.valueOf(
+                System.getProperty("juego.scores.fsync", "INTERVAL").toUpperCase());
+        long fsyncMillis = Long.getLong("juego.scores.fsyncMillis", 1000L);
+        long snapshotEvery = Long.getLong("juego.scores.snapshotEvery", 100000L);
+        int shards = Integer.getInteger("juego.scores.shards",
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
 
-    public List<Round> loadRounds() {
-        List<Round> rounds = new ArrayList<>();
+        try {
+            ShardedScoreStore store = new ShardedScoreStore(dir, shards, fsync, fsyncMillis, snapshotEvery);
+            if (store.isEmpty()) importLegacyScores(store);
+            return store;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo abrir el historial de puntajes en " + dir, e);
+        }
+    }
 
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("data/rounds.xml")) {
+    private void rebuildLeaderboard() {
+        long start = System.currentTimeMillis();
+        // Basta con los totales: la clasificación sólo acumula puntos
+        scores.forEachPlayerTotal(leaderboard::addGlobal);
+        scores.forEachRoomTotal((room, player, total) -> leaderboard.addInRoom(room, player, total));
+        LOG.info("Clasificación reconstruida: {} jugadores en {} ms",
+                leaderboard.playerCount(), System.currentTimeMillis() - start);
+    }
 
-            if (is == null) {
-                throw new IllegalStateException("No se encontró el archivo rounds.xml en resources/data/");
+    // Migra una única vez las entradas existentes de scores.xml al registro
+    private void importLegacyScores(ShardedScoreStore store) {
+        if (!scoresFile.exists() || scoresFile.length() == 0) return;
+        try {
+            Document doc = DocumentBuilderFactory.newInstance()
+                    .newDocumentBuilder().parse(scoresFile);
+            NodeList entries = doc.getElementsByTagName("entry");
+            List<ScoreEntry> batch = new ArrayList<>();
+            for (int i = 0; i < entries.getLength(); i++) {
+                Element e = (Element) entries.item(i);
+                batch.add(new ScoreEntry(e.getAttribute("player"), e.getAttribute("room"),
+                        Integer.parseInt(e.getAttribute("points")), 0L));
+            }
+            store.appendNow(batch);
+            if (!batch.isEmpty()) {
+                LOG.info("Migradas {} entradas de scores.xml al historial", batch.size());
             }
+        } catch (Exception e) {
+            LOG.warn("No se pudo migrar scores.xml: {}", e.getMessage());
+        }
+    }
 
-            Document doc = DocumentBuilderFactory.newInstance()
-                    .newDocumentBuilder().parse(is);
+    // ---------------------------------------------------------
+    // CARGAR RONDAS
+    // ---------------------------------------------------------
 
-            NodeList roundNodes = doc.getElementsByTagName("round");
+    /**
+     * Devuelve las rondas del catálogo compartido. La lista es inmutable y
+     * sólo se vuelve a parsear rounds.xml si el archivo cambió.
+     */
+    @Override
+    public List<Round> loadRounds() {
+        return getCatalog().rounds;
+    }
 
-            for (int i = 0; i < roundNodes.getLength(); i++) {
-                Element roundElement = (Element) roundNodes.item(i);
+    public RoundCatalog getCatalog() {
+        RoundCatalog current = catalog.get();
+        if (current != null) {
+            long now = System.currentTimeMillis();
+            if (now - lastReloadCheck < reloadCheckMillis) return current;
+            lastReloadCheck = now;
+            if (roundsSource().lastModified() == current.sourceModified) return current;
+        }
 
-                // Obtener palabra
-                Node wordNode = roundElement.getElementsByTagName("word").item(0);
-                if (wordNode == null || wordNode.getTextContent().trim().isEmpty()) {
-                    System.err.println("⚠️ Ronda " + (i + 1) + " sin <word>, se omitirá");
-                    continue;
-                }
-                String word = wordNode.getTextContent().trim();
-
-                // Obtener imágenes
-                NodeList imgNodes = roundElement.getElementsByTagName("img");
-                List<String> images = new ArrayList<>();
-                for (int j = 0; j < imgNodes.getLength(); j++) {
-                    String imgPath = imgNodes.item(j).getTextContent().trim();
-                    if (!imgPath.isEmpty()) {
-                        images.add(imgPath);
-                    }
-                }
-                if (images.isEmpty()) {
-                    System.err.println("⚠️ Ronda '" + word + "' no tiene imágenes, se omitirá");
-                    continue;
-                }
+        synchronized (reloadLock) {
+            RoundCatalog latest = catalog.get();
+            if (latest != null && latest != current) return latest; // otro hilo ya recargó
 
-                // Obtener tiempo
-                Node timeNode = roundElement.getElementsByTagName("time").item(0);
-                if (timeNode == null || timeNode.getTextContent().trim().isEmpty()) {
-                    System.err.println("⚠️ Ronda '" + word + "' sin <time>, se omitirá");
-                    continue;
-                }
-                int time;
-                try {
-                    time = Integer.parseInt(timeNode.getTextContent().trim());
-                } catch (NumberFormatException e) {
-                    System.err.println("⚠️ Ronda '" + word + "' tiene <time> inválido, se omitirá");
-                    continue;
+            long modified = roundsSource().lastModified();
+            try {
+                RoundCatalog loaded = new RoundCatalog(readRounds(), modified);
+                catalog.set(loaded);
+                if (latest != null) {
+                    LOG.info("Catálogo de rondas recargado ({} rondas)", loaded.size());
                 }
+                return loaded;
+            } catch (IllegalStateException e) {
+                if (latest == null) throw e;
+                // Archivo a medio editar o inválido: se conserva el catálogo anterior
+                LOG.warn("No se pudo recargar {}: {}", roundsSource().getName(), e.getMessage());
+                catalog.set(new RoundCatalog(latest.rounds, modified));
+                return latest;
+            }
+        }
+    }
+
+    private File roundsSource() {
+        return usePack ? packFile : roundsFile;
+    }
 
-                rounds.add(new Round(word, images.toArray(new String[0]), time));
+    private List<Round> readRounds() {
+        if (usePack) {
+            try {
+                RoundPack pack = RoundPack.open(packFile);
+                if (pack.size() == 0) throw new IllegalStateException("El paquete " + packFile + " no tiene rondas");
+                return pack.asList();
+            } catch (IOException e) {
+                throw new IllegalStateException("No se pudo abrir " + packFile + ": " + e.getMessage(), e);
             }
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        try (InputStream is = roundsFile.isFile()
+                ? new FileInputStream(roundsFile)
+                // Dentro de un jar no hay archivo: se lee del classpath (sin recarga)
+                : getClass().getClassLoader().getResourceAsStream("data/rounds.xml")) {
+
+            if (is == null) {
+                throw new IllegalStateException("No se encontró el archivo rounds.xml en resources/data/");
+            }
+            return parseRounds(is);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo leer rounds.xml: " + e.getMessage(), e);
         }
+    }
+
+    /** Parsea el catálogo en streaming, sin construir el DOM completo. */
+    static List<Round> parseRounds(InputStream is) {
+        List<Round> rounds = RoundStreamReader.readAll(is);
 
         if (rounds.isEmpty()) {
             throw new IllegalStateException("No se cargaron rondas válidas desde rounds.xml");
@@ -125,24 +216,61 @@ public class XMLDatabase {
     // GUARDAR PUNTAJE
     // ---------------------------------------------------------
 
-    public synchronized void saveScore(String player, int points, String room) {
-        try {
-            Document doc = DocumentBuilderFactory.newInstance()
-                    .newDocumentBuilder().parse(scoresFile);
+    /**
+     * Encola el puntaje; lo escribe el ScoreWriter de la partición de la sala.
+     * La clasificación sólo lo suma si el escritor lo aceptó.
+     */
+    @Override
+    public void saveScore(String player, int points, String room) {
+        if (scores.submit(new ScoreEntry(player, room, points, System.currentTimeMillis()))) {
+            leaderboard.record(player, room, points);
+        }
+    }
+
+    @Override
+    public File getDataDir() { return scoresFile.getParentFile(); }
 
-            Element root = doc.getDocumentElement();
+    @Override
+    public Leaderboard getLeaderboard() { return leaderboard; }
 
-            Element score = doc.createElement("entry");
-            score.setAttribute("player", player);
-            score.setAttribute("room", room);
-            score.setAttribute("points", String.valueOf(points));
+    @Override
+    public int getScoreBacklog() { return scores.backlog(); }
+
+    // ---------------------------------------------------------
+    // EXPORTAR PUNTAJES
+    // ---------------------------------------------------------
 
-            root.appendChild(score);
+    @Override
+    public void exportScoresXML(Writer out) throws IOException {
+        awaitPendingScores();
+        scores.exportXML(out);
+    }
 
-            saveXML(doc, scoresFile);
+    private void awaitPendingScores() throws InterruptedIOException {
+        try {
+            scores.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando puntajes pendientes");
+        }
+    }
 
-        } catch (Exception ex) {
-            ex.printStackTrace();
+    /** Regenera scores.xml a partir del registro (escritura atómica vía archivo temporal). */
+    public void exportScores() throws IOException {
+        awaitPendingScores();
+        File tmp = new File(scoresFile.getParentFile(), scoresFile.getName() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            scores.exportXML(out);
+        }
+        if (!tmp.renameTo(scoresFile)) {
+            scoresFile.delete();
+            if (!tmp.renameTo(scoresFile)) throw new IOException("No se pudo reemplazar " + scoresFile);
         }
     }
+
+    @Override
+    public void close() {
+        scores.close();
+    }
 }
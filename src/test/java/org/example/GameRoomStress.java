@@ -0,0 +1,314 @@
+package org.example;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Prueba de estrés de la máquina de estados de GameRoom: muchos hilos
+ * compiten por unir jugadores, responder y pasar de ronda en muchas salas a
+ * la vez, y al final se comprueban los invariantes con lo que vieron los
+ * oyentes.
+ *
+ * GameRoomStressTest la corre en pequeño en cada mvn test. La versión
+ * grande va en el jar de benchmarks (que incluye las clases de prueba):
+ *   java -cp target/benchmarks.jar org.example.GameRoomStress
+ *
+ *   -Djuego.stress.rooms=2000     salas
+ *   -Djuego.stress.rounds=5       rondas por partida
+ *   -Djuego.stress.players=6      maxPlayers de cada sala
+ *   -Djuego.stress.candidates=10  nombres que intentan unirse a cada sala
+ *   -Djuego.stress.threads=16     hilos que compiten
+ *
+ * Invariantes:
+ *   - cada sala tiene min(maxPlayers, candidatos) jugadores distintos y un playerJoined por cada uno;
+ *   - un solo scored por jugador y ronda, aunque la respuesta llegue repetida;
+ *   - el puntaje final es la suma de los puntos avisados en scored;
+ *   - un solo gameStarted aunque se pida start_game varias veces a la vez, y
+ *     ninguno mientras la partida sigue en curso;
+ *   - un roundEnded por ronda y un solo avance entre los nextRound simultáneos;
+ *   - un gameOver por partida.
+ *
+ * Desde main() termina con código 1 si alguno falla.
+ */
+public final class GameRoomStress {
+
+    private final int roomCount;
+    private final int rounds;
+    private final int maxPlayers;
+    private final int candidates;
+    private final int threads;
+
+    private final ExecutorService pool;
+    private final GameStorage storage = new NullStorage();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+    GameRoomStress(int roomCount, int rounds, int maxPlayers, int candidates, int threads) {
+        this.roomCount = roomCount;
+        this.rounds = rounds;
+        this.maxPlayers = maxPlayers;
+        this.candidates = candidates;
+        this.threads = threads;
+        this.pool = Executors.newFixedThreadPool(threads, ServerExecutors.named("stress"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Una línea de log por ronda y sala taparía el resultado
+        if (System.getProperty("juego.log.level") == null) System.setProperty("juego.log.level", "WARN");
+        GameRoomStress stress = new GameRoomStress(
+                Integer.getInteger("juego.stress.rooms", 2000),
+                Integer.getInteger("juego.stress.rounds", 5),
+                Integer.getInteger("juego.stress.players", 6),
+                Integer.getInteger("juego.stress.candidates", 10),
+                Integer.getInteger("juego.stress.threads", 16));
+        System.out.println("Estrés: " + stress.roomCount + " salas x " + stress.rounds + " rondas, " + stress.maxPlayers
+                + " jugadores (" + stress.candidates + " candidatos), " + stress.threads + " hilos");
+        long start = System.nanoTime();
+        List<String> failures = stress.run();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (failures.isEmpty()) {
+            System.out.println("OK en " + millis + " ms");
+            System.exit(0);
+        }
+        System.out.println(failures.size() + " invariantes fallidos en " + millis + " ms:");
+        for (String f : failures.subList(0, Math.min(20, failures.size()))) System.out.println("  " + f);
+        System.exit(1);
+    }
+
+    /** Lo que cada sala avisó a sus oyentes. */
+    private final class Observed implements RoomListener {
+        final AtomicInteger joined = new AtomicInteger();
+        final AtomicInteger gameStarted = new AtomicInteger();
+        final AtomicIntegerArray roundStarted = new AtomicIntegerArray(rounds);
+        final AtomicIntegerArray roundEnded = new AtomicIntegerArray(rounds);
+        final AtomicInteger gameOver = new AtomicInteger();
+        // "ronda:jugador" -> cantidad de scored
+        final Map<String, AtomicInteger> scored = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> points = new ConcurrentHashMap<>();
+        volatile int currentRound;
+
+        @Override
+        public void playerJoined(GameRoom room, String player) {
+            joined.incrementAndGet();
+        }
+
+        @Override
+        public void gameStarted(GameRoom room, List<Round> loaded) {
+            gameStarted.incrementAndGet();
+        }
+
+        @Override
+        public void roundStarted(GameRoom room, int index, long startTime) {
+            roundStarted.incrementAndGet(index);
+            currentRound = index;
+        }
+
+        @Override
+        public void scored(GameRoom room, String player, int pts, int total) {
+            scored.computeIfAbsent(currentRound + ":" + player, k -> new AtomicInteger()).incrementAndGet();
+            points.computeIfAbsent(player, k -> new AtomicInteger()).addAndGet(pts);
+        }
+
+        @Override
+        public void roundEnded(GameRoom room, int index) {
+            roundEnded.incrementAndGet(index);
+        }
+
+        @Override
+        public void gameOver(GameRoom room) {
+            gameOver.incrementAndGet();
+        }
+    }
+
+    /** Corre la prueba completa y devuelve los invariantes que fallaron (vacía si ninguno). */
+    List<String> run() throws InterruptedException {
+        try {
+            play();
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ArrayList<>(failures);
+    }
+
+    private void play() throws InterruptedException {
+        List<Round> catalog = rounds(rounds);
+        GameRoom[] rooms = new GameRoom[roomCount];
+        Observed[] observed = new Observed[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            rooms[i] = new GameRoom("STRESS_" + i, maxPlayers);
+            observed[i] = new Observed();
+            rooms[i].addListener(observed[i]);
+        }
+
+        // Uniones: cada nombre lo intentan dos hilos a la vez
+        List<Runnable> joins = new ArrayList<>();
+        for (GameRoom room : rooms) {
+            for (int c = 0; c < candidates; c++) {
+                String name = "p" + c;
+                joins.add(() -> room.addPlayer(name));
+                joins.add(() -> room.addPlayer(name));
+            }
+        }
+        race(joins);
+        for (int i = 0; i < roomCount; i++) {
+            int players = rooms[i].getPlayerCount();
+            check(players == Math.min(maxPlayers, candidates), rooms[i], "jugadores = " + players);
+            check(observed[i].joined.get() == players, rooms[i], "playerJoined = " + observed[i].joined.get());
+            check(new HashSet<>(rooms[i].getPlayers()).size() == players, rooms[i], "nombres repetidos");
+        }
+
+        // Cuatro start_game simultáneos por sala: uno solo la inicia
+        AtomicInteger[] started = new AtomicInteger[roomCount];
+        race(startTasks(rooms, catalog, started));
+        for (int i = 0; i < roomCount; i++) {
+            check(started[i].get() == 1, rooms[i], "inicios = " + started[i].get());
+            check(observed[i].gameStarted.get() == 1, rooms[i], "gameStarted = " + observed[i].gameStarted.get());
+            check(observed[i].roundStarted.get(0) == 1, rooms[i], "roundStarted de la ronda 1 = " + observed[i].roundStarted.get(0));
+        }
+
+        int[] advances = new int[roomCount];
+        for (int r = 0; r < rounds; r++) {
+            // Cada jugador acierta dos veces y falla una, en hilos distintos
+            List<Runnable> answers = new ArrayList<>();
+            for (GameRoom room : rooms) {
+                String word = catalog.get(r).word;
+                for (String player : room.getPlayers()) {
+                    answers.add(() -> room.submitAnswer(player, word, storage));
+                    answers.add(() -> room.submitAnswer(player, word.toLowerCase(), storage));
+                    answers.add(() -> room.submitAnswer(player, "NO" + word, storage));
+                }
+            }
+            // Un start_game con la partida en curso no debe reiniciarla
+            AtomicInteger[] restarted = new AtomicInteger[roomCount];
+            if (r == 0) answers.addAll(startTasks(rooms, catalog, restarted));
+            race(answers);
+
+            for (int i = 0; i < roomCount; i++) {
+                if (r == 0) check(restarted[i].get() == 0, rooms[i], "reinicios en curso = " + restarted[i].get());
+                check(rooms[i].isRoundFinished(), rooms[i], "ronda " + (r + 1) + " sin terminar");
+                check(observed[i].roundEnded.get(r) == 1, rooms[i],
+                        "roundEnded de la ronda " + (r + 1) + " = " + observed[i].roundEnded.get(r));
+                for (String player : rooms[i].getPlayers()) {
+                    AtomicInteger n = observed[i].scored.get(r + ":" + player);
+                    int count = n == null ? 0 : n.get();
+                    check(count == 1, rooms[i], "scored de " + player + " en la ronda " + (r + 1) + " = " + count);
+                }
+            }
+
+            // Cuatro nextRound simultáneos por sala: a lo sumo uno avanza
+            AtomicInteger[] won = new AtomicInteger[roomCount];
+            List<Runnable> nexts = new ArrayList<>();
+            for (int i = 0; i < roomCount; i++) {
+                GameRoom room = rooms[i];
+                AtomicInteger w = won[i] = new AtomicInteger();
+                for (int k = 0; k < 4; k++) {
+                    nexts.add(() -> {
+                        if (room.nextRound()) w.incrementAndGet();
+                    });
+                }
+            }
+            race(nexts);
+
+            boolean last = r == rounds - 1;
+            for (int i = 0; i < roomCount; i++) {
+                advances[i] += won[i].get();
+                check(won[i].get() == (last ? 0 : 1), rooms[i],
+                        "avances tras la ronda " + (r + 1) + " = " + won[i].get());
+                if (!last) {
+                    check(observed[i].roundStarted.get(r + 1) == 1, rooms[i],
+                            "roundStarted de la ronda " + (r + 2) + " = " + observed[i].roundStarted.get(r + 1));
+                }
+            }
+        }
+
+        for (int i = 0; i < roomCount; i++) {
+            GameRoom room = rooms[i];
+            check(room.isGameOver(), room, "la partida no terminó");
+            check(observed[i].gameStarted.get() == 1, room, "gameStarted durante la partida = " + observed[i].gameStarted.get());
+            check(observed[i].gameOver.get() == 1, room, "gameOver = " + observed[i].gameOver.get());
+            check(advances[i] == rounds - 1, room, "avances = " + advances[i]);
+            for (String player : room.getPlayers()) {
+                AtomicInteger pts = observed[i].points.get(player);
+                int expected = pts == null ? 0 : pts.get();
+                check(room.getScore(player) == expected, room,
+                        "puntaje de " + player + " = " + room.getScore(player) + ", avisado " + expected);
+            }
+            room.close();
+        }
+    }
+
+    // Cuatro startGame por sala; won[i] cuenta los que la iniciaron
+    private static List<Runnable> startTasks(GameRoom[] rooms, List<Round> catalog, AtomicInteger[] won) {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < rooms.length; i++) {
+            GameRoom room = rooms[i];
+            AtomicInteger w = won[i] = new AtomicInteger();
+            for (int k = 0; k < 4; k++) {
+                tasks.add(() -> {
+                    if (room.startGame(catalog)) w.incrementAndGet();
+                });
+            }
+        }
+        return tasks;
+    }
+
+    // Lanza las tareas mezcladas y juntas para que compitan entre salas y dentro de cada una
+    private void race(List<Runnable> tasks) throws InterruptedException {
+        Collections.shuffle(tasks);
+        CountDownLatch ready = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(tasks.size());
+        int chunk = (tasks.size() + threads - 1) / threads;
+        for (int from = 0; from < tasks.size(); from += chunk) {
+            List<Runnable> slice = tasks.subList(from, Math.min(tasks.size(), from + chunk));
+            pool.execute(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (Runnable task : slice) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        failures.add("excepción: " + e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        ready.countDown();
+        done.await();
+    }
+
+    private void check(boolean condition, GameRoom room, String what) {
+        if (!condition) failures.add(room.getId() + ": " + what);
+    }
+
+    private static List<Round> rounds(int count) {
+        List<Round> rounds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rounds.add(new Round("PALABRA" + i, new String[]{
+                    "data/imagenes/" + i + "a.jpg", "data/imagenes/" + i + "b.jpg",
+                    "data/imagenes/" + i + "c.jpg", "data/imagenes/" + i + "d.jpg"}, 30));
+        }
+        return rounds;
+    }
+
+    /** Almacenamiento que descarta los puntajes: sólo interesa la sala. */
+    private static final class NullStorage implements GameStorage {
+        private final Leaderboard leaderboard = new Leaderboard();
+
+        @Override public List<Round> loadRounds() { return rounds(10); }
+        @Override public void saveScore(String player, int points, String room) {}
+        @Override public Leaderboard getLeaderboard() { return leaderboard; }
+        @Override public void exportScoresXML(Writer out) {}
+        @Override public int getScoreBacklog() { return 0; }
+        @Override public File getDataDir() { return new File(System.getProperty("java.io.tmpdir")); }
+        @Override public void close() {}
+    }
+}
@@ -0,0 +1,21 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GameRoomStress en tamaño chico para cada build; la corrida grande sigue
+ * disponible desde el jar de benchmarks.
+ */
+class GameRoomStressTest {
+
+    @Test
+    void roomStateMachineHoldsItsInvariantsUnderContention() throws InterruptedException {
+        List<String> failures = new GameRoomStress(200, 3, 6, 10, 8).run();
+        assertTrue(failures.isEmpty(), () -> failures.size() + " invariantes fallidos, p. ej. "
+                + failures.subList(0, Math.min(5, failures.size())));
+    }
+}